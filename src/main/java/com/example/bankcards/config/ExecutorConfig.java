@@ -0,0 +1,56 @@
+package com.example.bankcards.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+// Ограниченные пулы потоков для тяжелых операций, чтобы они не занимали потоки обработки HTTP-запросов без меры
+@Configuration
+public class ExecutorConfig {
+
+    // Общий пул приложения: на нем Spring MVC выполняет асинхронные ответы (потоковые выгрузки /users/export
+    // и /cards/export). Boot создает его сам, только если в контексте нет других Executor, а пулы ниже
+    // его отключают - тогда MVC переходит на SimpleAsyncTaskExecutor с новым потоком на каждый запрос.
+    // Поэтому пул объявлен явно, а размеры и очередь берутся из spring.task.execution.pool
+    @Bean(name = "applicationTaskExecutor")
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    // Шифрование и хэширование номеров при импорте карт. Очередь ограничена: если пул занят,
+    // задачу выполняет вызывающий поток - так импорт сам притормаживает чтение файла, а память не растет
+    @Bean(name = "cardImportExecutor")
+    public ThreadPoolTaskExecutor cardImportExecutor(
+            @Value("${cards.import.threads:4}") int threads,
+            @Value("${cards.import.queue-capacity:16}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("card-import-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    // Проверка паролей (BCrypt) для /auth/login. Пул и очередь ограничены: при переполнении задача отклоняется
+    // и клиент получает 429, а не занимает все ядра процессора вместе с остальными запросами
+    @Bean(name = "loginExecutor")
+    public ThreadPoolTaskExecutor loginExecutor(
+            @Value("${auth.login.threads:2}") int threads,
+            @Value("${auth.login.queue-capacity:50}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("login-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.bankcards.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Включает фоновые задачи из пакета job (очистка, обслуживание таблиц)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -3,6 +3,7 @@ package com.example.bankcards.controller;
 import com.example.bankcards.dto.LoginRequest;
 import com.example.bankcards.service.AuthService;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -25,8 +26,12 @@ public class AuthController {
     final AuthService authService;
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
-        AuthResponse response = authService.authenticate(loginRequest.getUsername(), loginRequest.getPassword());
+    public ResponseEntity<AuthResponse> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+                                                         HttpServletRequest request) {
+        // Попытки входа ограничиваются по адресу непосредственного собеседника (getRemoteAddr). X-Forwarded-For
+        // не учитывается: за балансировщиком все клиенты делят один лимит по адресу прокси
+        AuthResponse response = authService.authenticate(loginRequest.getUsername(), loginRequest.getPassword(),
+                request.getRemoteAddr());
         return ResponseEntity.ok(response);
     }
 }
@@ -1,9 +1,21 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.CardImportResultDTO;
 import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.dto.CardRequestDTO;
+import com.example.bankcards.dto.CardSearchCriteria;
+import com.example.bankcards.dto.CardStatsDTO;
+import com.example.bankcards.dto.CardTransactionDTO;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResultDTO;
+import com.example.bankcards.dto.UserCardStatsDTO;
+import com.example.bankcards.exception.ValidationException;
+import com.example.bankcards.service.CardExportService;
+import com.example.bankcards.service.CardImportService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardStatsService;
 import com.example.bankcards.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -13,14 +25,19 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import com.example.bankcards.dto.BlockRequestDTO;
 import com.example.bankcards.service.BlockRequestService;
 
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/cards")
@@ -30,6 +47,9 @@ import java.util.List;
 public class CardController {
 
     final CardService cardService;
+    final CardImportService cardImportService;
+    final CardExportService cardExportService;
+    final CardStatsService cardStatsService;
     final BlockRequestService blockRequestService;
     final UserService userService;
 
@@ -46,16 +66,44 @@ public class CardController {
 
     }
 
+    @GetMapping("/me/cursor")
+    @Operation(summary = "Получить мои карты (курсор)",
+            description = "Карты текущего пользователя по возрастанию id с курсорной пагинацией. " +
+                    "Для следующей страницы передайте nextCursor из предыдущего ответа")
+    public ResponseEntity<CursorPage<CardDTO>> getUserCardsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        Long userId = userService.getCurrentUserId();
+        return ResponseEntity.ok(cardService.getUserCards(userId, cursor, size));
+    }
+
     @PostMapping("/transfer")
-    @Operation(summary = "Перевод между картами", description = "Перевод средств между своими картами")
-    public ResponseEntity<Void> transferBetweenCards(@Valid @RequestBody TransferRequest transferRequest) {
+    @Operation(summary = "Перевод между картами",
+            description = "Перевод средств между своими картами. Повтор запроса с тем же заголовком Idempotency-Key " +
+                    "не проводит перевод второй раз")
+    public ResponseEntity<Void> transferBetweenCards(
+            @Valid @RequestBody TransferRequest transferRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
 
         Long userId = userService.getCurrentUserId();
 
-        cardService.transferBetweenOwnCards(userId, transferRequest.getFromCardId(),
-                transferRequest.getToCardId(), transferRequest.getAmount());
+        boolean replayed = cardService.transferBetweenOwnCards(userId, transferRequest.getFromCardId(),
+                transferRequest.getToCardId(), transferRequest.getAmount(), idempotencyKey);
 
-        return ResponseEntity.ok().build();
+        return ResponseEntity.ok()
+                .header("Idempotent-Replayed", String.valueOf(replayed))
+                .build();
+    }
+
+    @PostMapping("/transfers/batch")
+    @Operation(summary = "Пакетный перевод между картами",
+            description = "Выполняет до 1000 переводов между своими картами и возвращает результат по каждому")
+    public ResponseEntity<List<TransferResultDTO>> transferBatch(@Valid @RequestBody BatchTransferRequest batchRequest) {
+
+        Long userId = userService.getCurrentUserId();
+        List<TransferResultDTO> results = cardService.transferBatch(userId, batchRequest.getTransfers());
+        return ResponseEntity.ok(results);
     }
 
     @GetMapping("/{cardId}/balance")
@@ -68,6 +116,19 @@ public class CardController {
 
     }
 
+    @GetMapping("/{cardId}/transactions")
+    @Operation(summary = "История операций по карте",
+            description = "Возвращает журнал операций по карте (новые сверху) с курсорной пагинацией. " +
+                    "Для следующей страницы передайте nextCursor из предыдущего ответа")
+    public ResponseEntity<CursorPage<CardTransactionDTO>> getCardTransactions(
+            @PathVariable Long cardId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        CursorPage<CardTransactionDTO> transactions = cardService.getCardTransactions(cardId, cursor, size);
+        return ResponseEntity.ok(transactions);
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Получить карту по ID", description = "Возвращает карту по идентификатору")
     public ResponseEntity<CardDTO> getCardById(@PathVariable Long id) {
@@ -113,6 +174,30 @@ public class CardController {
 
     }
 
+    @GetMapping("/cursor")
+    @Operation(summary = "Получить все карты (курсор)",
+            description = "Все карты по возрастанию id с курсорной пагинацией: без count(*) и OFFSET, " +
+                    "время ответа не зависит от номера страницы")
+    public ResponseEntity<CursorPage<CardDTO>> getAllCardsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        return ResponseEntity.ok(cardService.getAllCards(cursor, size));
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Поиск карт",
+            description = "Карты с фильтрами: status, expiresFrom/expiresTo (yyyy-MM-dd), minBalance/maxBalance, " +
+                    "ownerPrefix (начало имени владельца без учета регистра), userId. Фильтры необязательны и объединяются через AND. " +
+                    "Курсорная пагинация по возрастанию id, без count(*)")
+    public ResponseEntity<CursorPage<CardDTO>> searchCards(
+            @ModelAttribute CardSearchCriteria criteria,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        return ResponseEntity.ok(cardService.searchCards(criteria, cursor, size));
+    }
+
     @PostMapping
     @Operation(summary = "Создать карту", description = "Создает новую банковскую карту")
     public ResponseEntity<CardDTO> createCard(@Valid @RequestBody CardRequestDTO cardRequestDTO) {
@@ -126,6 +211,83 @@ public class CardController {
         return ResponseEntity.ok(createdCard);
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @Operation(summary = "Импорт карт из файла",
+            description = "Потоковая загрузка карт: CSV (number,owner,expirationDate,userId) или NDJSON " +
+                    "(по объекту CardRequestDTO в строке). Файл передается телом запроса; возвращает отчет с ошибками по строкам")
+    public ResponseEntity<CardImportResultDTO> importCards(
+            InputStream body,
+            @RequestHeader("Content-Type") String contentType) {
+
+        if (!userService.isCurrentUserAdmin()) {
+            throw new AccessDeniedException("Admin access required");
+        }
+
+        // Тело читается напрямую из запроса, без загрузки файла в память целиком
+        CardImportResultDTO result = cardImportService.importCards(body, contentType.startsWith("application/x-ndjson"));
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/stats")
+    @Operation(summary = "Статистика по картам",
+            description = "Количество карт и сумма балансов по статусам и в целом. Читается из сводной таблицы, " +
+                    "время ответа не зависит от количества карт")
+    public ResponseEntity<CardStatsDTO> getCardStats() {
+
+        return ResponseEntity.ok(cardStatsService.getStats());
+    }
+
+    @GetMapping("/stats/users/{userId}")
+    @Operation(summary = "Статистика по картам пользователя", description = "Количество карт и сумма балансов пользователя")
+    public ResponseEntity<UserCardStatsDTO> getUserCardStats(@PathVariable Long userId) {
+
+        return ResponseEntity.ok(cardStatsService.getUserStats(userId));
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Выгрузить все карты",
+            description = "Потоковая выгрузка всех карт в CSV (format=csv) или NDJSON (format=ndjson) с маскированными номерами. " +
+                    "Если клиент передает Accept-Encoding: gzip, ответ сжимается на лету")
+    public ResponseEntity<StreamingResponseBody> exportCards(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+
+        // Права проверяются до начала ответа: после первой записанной строки вернуть 403 уже нельзя
+        if (!userService.isCurrentUserAdmin()) {
+            throw new AccessDeniedException("Admin access required");
+        }
+
+        boolean ndjson;
+        if ("csv".equalsIgnoreCase(format)) {
+            ndjson = false;
+        } else if ("ndjson".equalsIgnoreCase(format)) {
+            ndjson = true;
+        } else {
+            throw new ValidationException("Формат выгрузки должен быть csv или ndjson");
+        }
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+
+        StreamingResponseBody body = out -> {
+            if (!gzip) {
+                cardExportService.exportCards(out, ndjson);
+                return;
+            }
+            // syncFlush: периодический flush выгрузки доходит до клиента, а не копится в буфере компрессора
+            GZIPOutputStream compressed = new GZIPOutputStream(out, 8192, true);
+            cardExportService.exportCards(compressed, ndjson);
+            compressed.finish();
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ndjson ? "application/x-ndjson" : "text/csv;charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"cards." + (ndjson ? "ndjson" : "csv") + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @PutMapping("/{id}/block")
     @Operation(summary = "Заблокировать карту (админ)", description = "Блокирует карту")
     public ResponseEntity<CardDTO> blockCard(@PathVariable Long id) {
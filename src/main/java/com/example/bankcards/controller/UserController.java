@@ -1,5 +1,6 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.UserCreateDTO;
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.dto.UserUpdateDTO;
@@ -10,8 +11,11 @@ import jakarta.validation.Valid;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -31,6 +35,33 @@ public class UserController {
         return ResponseEntity.ok(users);
     }
 
+    @GetMapping("/cursor")
+    @Operation(summary = "Получить пользователей (курсор)",
+            description = "Пользователи по возрастанию id с курсорной пагинацией. " +
+                    "Для следующей страницы передайте nextCursor из предыдущего ответа")
+    public ResponseEntity<CursorPage<UserDTO>> getUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        return ResponseEntity.ok(userService.getUsers(cursor, size));
+    }
+
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    @Operation(summary = "Выгрузить всех пользователей",
+            description = "Потоковая выгрузка всех пользователей в формате NDJSON (один JSON-объект в строке)")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+
+        // Права проверяются до начала ответа: после первой записанной строки вернуть 403 уже нельзя
+        if (!userService.isCurrentUserAdmin()) {
+            throw new AccessDeniedException("Admin access required");
+        }
+
+        StreamingResponseBody body = userService::exportUsers;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Получить пользователя по ID", description = "Возвращает пользователя по идентификатору")
     public ResponseEntity<UserDTO> getUserById(@PathVariable Long id) {
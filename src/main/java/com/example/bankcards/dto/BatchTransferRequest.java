@@ -0,0 +1,23 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BatchTransferRequest {
+
+    @NotEmpty(message = "Укажите хотя бы один перевод")
+    @Size(max = 1000, message = "Не более 1000 переводов в одном запросе")
+    List<@NotNull(message = "Элемент списка переводов не может быть null") @Valid TransferRequest> transfers;
+
+}
@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardImportErrorDTO {
+    long line; // Номер строки в файле, начиная с 1
+    String error;
+}
@@ -0,0 +1,19 @@
+package com.example.bankcards.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardImportResultDTO {
+    long totalRows; // Строк с данными в файле (без заголовка и пустых строк)
+    long imported;
+    long failed;
+    List<CardImportErrorDTO> errors; // Ошибки по строкам, не больше cards.import.max-reported-errors
+    boolean errorsTruncated; // true, если ошибок больше, чем попало в errors
+}
@@ -2,6 +2,7 @@ package com.example.bankcards.dto;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
@@ -18,6 +19,7 @@ public class CardRequestDTO {
     String number;
 
     @NotBlank(message = "Введите имя владельца")
+    @Size(max = 100, message = "Имя владельца не длиннее 100 символов")
     String owner;
 
     @NotNull(message = "Укажите дату окончания действия")
@@ -0,0 +1,30 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardStatus;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Фильтры поиска карт администратором (GET /cards/search). Незаданный фильтр не участвует в запросе
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardSearchCriteria {
+    CardStatus status;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    LocalDate expiresFrom; // Включительно
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    LocalDate expiresTo; // Включительно
+
+    BigDecimal minBalance;
+    BigDecimal maxBalance;
+    String ownerPrefix; // Начало имени владельца без учета регистра
+    Long userId;
+}
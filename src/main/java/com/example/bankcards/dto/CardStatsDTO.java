@@ -0,0 +1,19 @@
+package com.example.bankcards.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Статистика по всем картам (GET /cards/stats): читается из сводной таблицы, а не считается по cards
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardStatsDTO {
+    List<CardStatusStatsDTO> byStatus; // По строке на каждый статус, включая статусы без карт
+    long totalCards;
+    BigDecimal totalBalance;
+}
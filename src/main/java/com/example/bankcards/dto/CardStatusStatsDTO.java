@@ -0,0 +1,18 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardStatus;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardStatusStatsDTO {
+    CardStatus status;
+    long cardCount;
+    BigDecimal totalBalance;
+}
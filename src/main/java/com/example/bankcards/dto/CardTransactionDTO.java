@@ -0,0 +1,26 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.CardTransactionType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CardTransactionDTO {
+    Long id;
+    Long cardId;
+    CardTransactionType type;
+    BigDecimal amount;
+    Long counterpartyCardId;
+    CardStatus status;
+    LocalDateTime createdAt;
+}
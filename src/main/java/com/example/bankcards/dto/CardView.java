@@ -0,0 +1,20 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Только колонки, нужные спискам карт. Неизменяемая проекция вместо сущности Card: Hibernate не создает
+// прокси User, не хранит снимок для dirty checking и не держит строки в контексте персистентности.
+// encryptedNumber нужен лишь для строк, у которых еще не заполнен lastFour
+public record CardView(
+        Long id,
+        String encryptedNumber,
+        String lastFour,
+        String owner,
+        LocalDate expirationDate,
+        CardStatus status,
+        BigDecimal balance,
+        Long userId) {
+}
@@ -0,0 +1,20 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+// Страница курсорной пагинации: вместо номера страницы клиент передает nextCursor из предыдущего ответа
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CursorPage<T> {
+    List<T> items;
+    String nextCursor; // null - это последняя страница
+    boolean hasNext;
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferResultDTO {
+    Integer index; // Позиция перевода в исходном запросе
+    Long fromCardId;
+    Long toCardId;
+    BigDecimal amount;
+    boolean success;
+    String error; // Причина отказа, если перевод не выполнен
+}
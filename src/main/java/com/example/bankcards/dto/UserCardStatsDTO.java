@@ -0,0 +1,17 @@
+package com.example.bankcards.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserCardStatsDTO {
+    Long userId;
+    long cardCount;
+    BigDecimal totalBalance;
+}
@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 public class BlockRequest {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "block_requests_seq")
+    @SequenceGenerator(name = "block_requests_seq", sequenceName = "block_requests_seq", allocationSize = 50) // Пул из 50 id на nextval, вставки идут JDBC-пакетами
     Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -21,13 +21,26 @@ import java.time.LocalDate;
 public class Card {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_seq")
+    @SequenceGenerator(name = "cards_seq", sequenceName = "cards_seq", allocationSize = 50) // Пул из 50 id на nextval, вставки идут JDBC-пакетами
     Long id;
 
+    // Номер и производные от него колонки пишутся только при создании карты: дальше их меняют фоновые задачи
+    // (CardNumberBackfillJob, CardReEncryptionJob) своими UPDATE. updatable = false исключает их из UPDATE сущности,
+    // поэтому перевод не перезапишет их устаревшими значениями, а UPDATE остается одинаковым и уходит JDBC-пакетами
     @NotBlank
-    @Column(name = "encrypted_number", nullable = false, unique = true, length = 100)
+    @Column(name = "encrypted_number", nullable = false, unique = true, length = 100, updatable = false)
     String encryptedNumber;
 
+    @Column(name = "last_four", length = 4, updatable = false)
+    String lastFour; // Последние 4 цифры номера: списки карт маскируют номер без дешифровки
+
+    @Column(name = "number_hash", unique = true, length = 64, updatable = false)
+    String numberHash; // HMAC номера карты: проверка дубликатов и поиск по номеру без дешифровки
+
+    @Column(name = "key_version", nullable = false, updatable = false)
+    Integer keyVersion = 1; // Версия ключа, которым зашифрован номер: по ней CardReEncryptionJob находит строки для перешифрования
+
     @NotBlank
     @Column(name = "owner", nullable = false, length = 100)
     String owner;
@@ -50,4 +63,8 @@ public class Card {
     @ToString.Exclude // подстраховка от этой бесконечной рекурсии(Когда Lombok вызывает user.toString и card.toString и потом в карт опять он вызывает user.toString и так до бесконечности)
     User user;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    Long version; // Оптимистичная блокировка: Hibernate проверяет и увеличивает версию при каждом UPDATE
+
 }
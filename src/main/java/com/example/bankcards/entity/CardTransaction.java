@@ -0,0 +1,50 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Запись журнала операций по карте. Журнал только дописывается, поэтому сущность неизменяемая
+@Entity
+@Table(name = "card_transactions")
+@Immutable
+@Data
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardTransaction {
+
+    // Последовательность вместо IDENTITY: записи журнала вставляются JDBC-пакетами
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_transactions_seq")
+    @SequenceGenerator(name = "card_transactions_seq", sequenceName = "card_transactions_id_seq", allocationSize = 50)
+    Long id;
+
+    @Column(name = "card_id", nullable = false)
+    Long cardId; // Без связи с Card: запись остается и после удаления карты
+
+    @Column(name = "user_id", nullable = false)
+    Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 30)
+    CardTransactionType type;
+
+    @Column(name = "amount", precision = 19, scale = 2)
+    BigDecimal amount;
+
+    @Column(name = "counterparty_card_id")
+    Long counterpartyCardId; // Вторая карта перевода
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20)
+    CardStatus status; // Статус карты после операции
+
+    @Column(name = "created_at", nullable = false)
+    LocalDateTime createdAt; // Ключ секционирования
+}
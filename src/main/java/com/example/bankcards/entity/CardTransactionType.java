@@ -0,0 +1,8 @@
+package com.example.bankcards.entity;
+
+public enum CardTransactionType {
+    CARD_CREATED, // Карта выпущена
+    TRANSFER_DEBIT, // Списание при переводе на другую карту
+    TRANSFER_CREDIT, // Зачисление при переводе с другой карты
+    STATUS_CHANGED // Карта заблокирована или активирована
+}
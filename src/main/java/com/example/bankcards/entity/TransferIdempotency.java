@@ -0,0 +1,44 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Выполненный перевод с ключом идемпотентности. Повтор запроса с тем же ключом не проводит перевод второй раз
+@Entity
+@Table(name = "transfer_idempotency")
+@Data
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TransferIdempotency {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "idempotency_key", nullable = false, length = 100)
+    String idempotencyKey; // Значение заголовка Idempotency-Key (уникально в пределах пользователя)
+
+    @Column(name = "user_id", nullable = false)
+    Long userId;
+
+    @Column(name = "from_card_id", nullable = false)
+    Long fromCardId;
+
+    @Column(name = "to_card_id", nullable = false)
+    Long toCardId;
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 2)
+    BigDecimal amount;
+
+    @Column(name = "created_at", nullable = false)
+    LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    LocalDateTime expiresAt; // После этого момента запись удаляется и ключ можно использовать снова
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.exception;
+
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds; // Значение заголовка Retry-After
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.bankcards.job;
+
+import com.example.bankcards.util.CardNumberHasher;
+import com.example.bankcards.util.EncryptionUtil;
+import com.example.bankcards.util.MaskingUtil;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Заполняет производные от номера колонки (cards.last_four и cards.number_hash) для карт, созданных до их появления.
+ * Идет порциями по возрастанию id; каждая порция - отдельная короткая транзакция с пакетным UPDATE.
+ * Прогресс хранится в самих данных (колонка IS NULL), поэтому после перезапуска задача продолжает
+ * с того места, где остановилась. Когда заполнять больше нечего, задача больше не обращается к БД
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardNumberBackfillJob {
+
+    final JdbcTemplate jdbcTemplate;
+    final TransactionTemplate transactionTemplate;
+    final EncryptionUtil encryptionUtil;
+    final MaskingUtil maskingUtil;
+    final CardNumberHasher cardNumberHasher;
+
+    @Value("${cards.backfill.enabled:true}")
+    boolean enabled;
+
+    @Value("${cards.backfill.batch-size:500}")
+    int batchSize;
+
+    volatile boolean completed;
+
+    @Scheduled(initialDelayString = "${cards.backfill.initial-delay:PT30S}",
+            fixedDelayString = "${cards.backfill.interval:PT5M}")
+    public void backfill() {
+        if (!enabled || completed) {
+            return;
+        }
+
+        long updated = 0;
+        long lastId = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, encrypted_number, last_four, number_hash FROM cards " +
+                            "WHERE (last_four IS NULL OR number_hash IS NULL) AND id > ? ORDER BY id LIMIT ?",
+                    lastId, batchSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            List<Object[]> lastFourBatch = new ArrayList<>(rows.size());
+            List<Object[]> hashBatch = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                Long id = ((Number) row.get("id")).longValue();
+                lastId = id;
+                try {
+                    String number = encryptionUtil.decrypt((String) row.get("encrypted_number"));
+                    if (row.get("last_four") == null) {
+                        lastFourBatch.add(new Object[]{maskingUtil.extractLastFour(number), id});
+                    }
+                    if (row.get("number_hash") == null) {
+                        String hash = cardNumberHasher.hash(number);
+                        hashBatch.add(new Object[]{hash, id, hash});
+                    }
+                } catch (RuntimeException e) {
+                    // Битую строку пропускаем, чтобы она не останавливала заполнение остальных
+                    log.warn("Не удалось обработать номер карты id={}: {}", id, e.getMessage());
+                }
+            }
+
+            // Условие IS NULL защищает от перезаписи значений, которые успел выставить createCard.
+            // Уже существующие дубликаты номера хэш не получают (иначе упадет уникальный индекс) - их нужно разобрать вручную
+            int[][] hashResults = transactionTemplate.execute(status -> {
+                jdbcTemplate.batchUpdate("UPDATE cards SET last_four = ? WHERE id = ? AND last_four IS NULL",
+                        lastFourBatch);
+                return jdbcTemplate.batchUpdate(
+                        "UPDATE cards SET number_hash = ? WHERE id = ? AND number_hash IS NULL " +
+                                "AND NOT EXISTS (SELECT 1 FROM cards WHERE number_hash = ?)",
+                        hashBatch, hashBatch.size(), (ps, args) -> {
+                            ps.setString(1, (String) args[0]);
+                            ps.setLong(2, (Long) args[1]);
+                            ps.setString(3, (String) args[2]);
+                        });
+            });
+
+            int hashed = 0;
+            for (int[] chunk : hashResults) {
+                for (int count : chunk) {
+                    hashed += count > 0 ? 1 : 0;
+                }
+            }
+            if (hashed < hashBatch.size()) {
+                log.warn("Карты с повторяющимся номером остались без number_hash: {}", hashBatch.size() - hashed);
+            }
+            updated += lastFourBatch.size() + hashed;
+        }
+
+        if (updated > 0) {
+            log.info("Заполнено производных значений номера карт: {}", updated);
+        }
+        // Проход без изменений означает, что остались только строки, которые заполнить нельзя (битые или дубликаты)
+        completed = updated == 0;
+    }
+}
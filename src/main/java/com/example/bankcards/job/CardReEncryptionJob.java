@@ -0,0 +1,215 @@
+package com.example.bankcards.job;
+
+import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Перешифровывает номера карт активным ключом после смены encryption.active-key-version.
+ * Идет по cards порциями по возрастанию id (keyset), каждая порция - короткая транзакция:
+ * SELECT ... FOR UPDATE SKIP LOCKED (строки, занятые переводами, пропускаются, а не ждут),
+ * пакетный UPDATE и запись контрольной точки в card_reencryption_checkpoints.
+ * Скорость ограничена encryption.rotation.rows-per-second, а один запуск - max-run-duration,
+ * поэтому перешифрование не отнимает у переводов соединения и блокировки.
+ * Пропущенные строки подбираются следующим проходом с начала таблицы
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardReEncryptionJob {
+
+    // Условие "версия ключа не текущая" записано как два диапазона, а не key_version <> ?: неравенство
+    // B-tree индекс idx_cards_key_version не использует, а два диапазона - использует (BitmapOr), поэтому
+    // подсчет остатка после завершения ротации не читает всю таблицу
+    static final String SELECT_CHUNK_SQL = "SELECT id, encrypted_number FROM cards " +
+            "WHERE id > ? AND (key_version < ? OR key_version > ?) ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    static final String COUNT_REMAINING_SQL = "SELECT count(*) FROM cards WHERE key_version < ? OR key_version > ?";
+
+    final JdbcTemplate jdbcTemplate;
+    final TransactionTemplate transactionTemplate;
+    final EncryptionUtil encryptionUtil;
+    final MeterRegistry meterRegistry;
+
+    @Value("${encryption.rotation.enabled:true}")
+    boolean enabled;
+
+    @Value("${encryption.rotation.chunk-size:200}")
+    int chunkSize;
+
+    @Value("${encryption.rotation.rows-per-second:1000}")
+    int rowsPerSecond; // 0 - без ограничения
+
+    @Value("${encryption.rotation.max-run-duration:PT1M}")
+    Duration maxRunDuration;
+
+    final AtomicLong remainingRows = new AtomicLong();
+    final AtomicLong lastCardId = new AtomicLong();
+    Counter reEncryptedRows;
+
+    // Число оставшихся строк после предыдущего полного прохода по каждой целевой версии ключа: если проход
+    // ничего не изменил, остались только строки, которые перешифровать нельзя, и повторять проходы бессмысленно.
+    // Значение прошлой версии к новой не относится - после очередной смены ключа отсчет начинается заново
+    final Map<Integer, Long> remainingAfterLastPass = new HashMap<>();
+    volatile int completedVersion;
+
+    @PostConstruct
+    void registerMetrics() {
+        reEncryptedRows = meterRegistry.counter("cards.encryption.rotation.rows");
+        Gauge.builder("cards.encryption.rotation.remaining", remainingRows, AtomicLong::get)
+                .description("Карт, еще не перешифрованных активным ключом")
+                .register(meterRegistry);
+        Gauge.builder("cards.encryption.rotation.last.card.id", lastCardId, AtomicLong::get)
+                .description("Контрольная точка перешифрования")
+                .register(meterRegistry);
+        Gauge.builder("cards.encryption.rotation.target.version", encryptionUtil, EncryptionUtil::getActiveKeyVersion)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${encryption.rotation.initial-delay:PT1M}",
+            fixedDelayString = "${encryption.rotation.interval:PT1M}")
+    public void reEncrypt() {
+        int targetVersion = encryptionUtil.getActiveKeyVersion();
+        if (!enabled || completedVersion == targetVersion) {
+            return;
+        }
+
+        Long checkpoint = loadCheckpoint(targetVersion);
+        if (checkpoint == null) {
+            completedVersion = targetVersion;
+            return;
+        }
+
+        remainingRows.set(countRemaining(targetVersion));
+        lastCardId.set(checkpoint);
+        long deadline = System.nanoTime() + maxRunDuration.toNanos();
+
+        while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+            long chunkStarted = System.nanoTime();
+            long fromId = lastCardId.get();
+            int[] chunk = transactionTemplate.execute(status -> reEncryptChunk(targetVersion, fromId));
+            int scanned = chunk[0];
+            int updated = chunk[1];
+
+            if (scanned == 0) {
+                finishPass(targetVersion);
+                return;
+            }
+
+            reEncryptedRows.increment(updated);
+            remainingRows.addAndGet(-updated);
+            throttle(scanned, chunkStarted);
+        }
+    }
+
+    // Одна порция: возвращает {прочитано строк, перешифровано строк}
+    private int[] reEncryptChunk(int targetVersion, long fromId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(SELECT_CHUNK_SQL,
+                fromId, targetVersion, targetVersion, chunkSize);
+        if (rows.isEmpty()) {
+            return new int[]{0, 0};
+        }
+
+        long maxId = fromId;
+        List<Object[]> batch = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            long id = ((Number) row.get("id")).longValue();
+            maxId = id;
+            try {
+                String encrypted = encryptionUtil.encrypt(encryptionUtil.decrypt((String) row.get("encrypted_number")));
+                batch.add(new Object[]{encrypted, encryptionUtil.keyVersionOf(encrypted), id});
+            } catch (RuntimeException e) {
+                // Строку, которую не удалось расшифровать, пропускаем - она не должна останавливать ротацию
+                log.warn("Не удалось перешифровать номер карты id={}: {}", id, e.getMessage());
+            }
+        }
+
+        jdbcTemplate.batchUpdate("UPDATE cards SET encrypted_number = ?, key_version = ? WHERE id = ?", batch);
+        // Контрольная точка пишется в той же транзакции: после сбоя порция либо применена вместе с ней, либо нет
+        jdbcTemplate.update("UPDATE card_reencryption_checkpoints SET last_card_id = ?, " +
+                        "rows_processed = rows_processed + ?, updated_at = now() WHERE target_key_version = ?",
+                maxId, batch.size(), targetVersion);
+        lastCardId.set(maxId);
+        return new int[]{rows.size(), batch.size()};
+    }
+
+    // Конец таблицы: если строки со старым ключом остались (были заблокированы или не расшифровались),
+    // следующий запуск начнет новый проход с начала
+    private void finishPass(int targetVersion) {
+        long remaining = countRemaining(targetVersion);
+        remainingRows.set(remaining);
+
+        if (remaining == 0) {
+            jdbcTemplate.update("UPDATE card_reencryption_checkpoints SET completed_at = now(), updated_at = now() " +
+                    "WHERE target_key_version = ?", targetVersion);
+            completedVersion = targetVersion;
+            log.info("Перешифрование номеров карт ключом версии {} завершено", targetVersion);
+            return;
+        }
+
+        Long remainingBefore = remainingAfterLastPass.put(targetVersion, remaining);
+        if (remainingBefore != null && remainingBefore == remaining) {
+            completedVersion = targetVersion;
+            log.warn("Не удалось перешифровать {} карт ключом версии {}, требуется ручная проверка", remaining, targetVersion);
+            return;
+        }
+
+        jdbcTemplate.update("UPDATE card_reencryption_checkpoints SET last_card_id = 0, updated_at = now() " +
+                "WHERE target_key_version = ?", targetVersion);
+        lastCardId.set(0);
+    }
+
+    // Возвращает id, с которого продолжить, или null, если перешифрование этой версией уже завершено
+    private Long loadCheckpoint(int targetVersion) {
+        jdbcTemplate.update("INSERT INTO card_reencryption_checkpoints (target_key_version, updated_at) " +
+                "VALUES (?, now()) ON CONFLICT (target_key_version) DO NOTHING", targetVersion);
+        Map<String, Object> checkpoint = jdbcTemplate.queryForMap(
+                "SELECT last_card_id, completed_at FROM card_reencryption_checkpoints WHERE target_key_version = ?",
+                targetVersion);
+        if (checkpoint.get("completed_at") != null && countRemaining(targetVersion) == 0) {
+            return null;
+        }
+        return ((Number) checkpoint.get("last_card_id")).longValue();
+    }
+
+    private long countRemaining(int targetVersion) {
+        Long count = jdbcTemplate.queryForObject(COUNT_REMAINING_SQL, Long.class, targetVersion, targetVersion);
+        return count != null ? count : 0;
+    }
+
+    // Выдерживает паузу так, чтобы средняя скорость не превышала rows-per-second
+    private void throttle(int rows, long chunkStarted) {
+        if (rowsPerSecond <= 0) {
+            return;
+        }
+        long targetNanos = TimeUnit.SECONDS.toNanos(rows) / rowsPerSecond;
+        long sleepNanos = targetNanos - (System.nanoTime() - chunkStarted);
+        if (sleepNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
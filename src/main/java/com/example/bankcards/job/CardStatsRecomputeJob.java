@@ -0,0 +1,133 @@
+package com.example.bankcards.job;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.function.IntSupplier;
+
+/**
+ * Периодически сверяет сводные таблицы card_status_stats и user_card_stats с cards и исправляет расхождения
+ * (например, после изменений карт в обход CardStatsService). Таблицы не блокируются: каждая сверка - один
+ * INSERT ... SELECT ... ON CONFLICT DO UPDATE. Его SELECT видит один снимок, в котором cards и сводка согласованы
+ * (их меняют одни и те же транзакции), и считает расхождение, а ON CONFLICT прибавляет его к последней
+ * зафиксированной версии строки. Транзакции, зафиксированные после снимка, свои приращения уже внесли сами,
+ * поэтому ничего не теряется и не учитывается дважды. Строки сводки блокируются только в конце запроса и
+ * в порядке ключа, как в CardStatsService.
+ * Статусы сверяются одним агрегатом по cards, пользователи - порциями по диапазонам id в коротких транзакциях.
+ * Сверку с двух экземпляров приложения одновременно исключает advisory-блокировка: иначе расхождение
+ * было бы прибавлено дважды
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardStatsRecomputeJob {
+
+    static final long ADVISORY_LOCK_KEY = 0x4361726453746174L; // "CardStat"
+
+    static final String FIX_STATUS_STATS_SQL = "INSERT INTO card_status_stats (status, shard, card_count, total_balance, updated_at) " +
+            "SELECT coalesce(a.status, s.status), coalesce(a.shard, s.shard), " +
+            "coalesce(a.card_count, 0) - coalesce(s.card_count, 0), coalesce(a.total_balance, 0) - coalesce(s.total_balance, 0), now() " +
+            "FROM (SELECT status, (user_id % ?)::int AS shard, count(*) AS card_count, coalesce(sum(balance), 0) AS total_balance " +
+            "FROM cards GROUP BY 1, 2) a FULL JOIN card_status_stats s ON s.status = a.status AND s.shard = a.shard " +
+            "WHERE coalesce(a.card_count, 0) <> coalesce(s.card_count, 0) " +
+            "OR coalesce(a.total_balance, 0) <> coalesce(s.total_balance, 0) " +
+            "ORDER BY 1, 2 ON CONFLICT (status, shard) DO UPDATE SET " +
+            "card_count = card_status_stats.card_count + EXCLUDED.card_count, " +
+            "total_balance = card_status_stats.total_balance + EXCLUDED.total_balance, updated_at = EXCLUDED.updated_at";
+
+    // Пользователи с id в (?, ?]: агрегат по индексу idx_cards_user_id_status
+    static final String FIX_USER_STATS_SQL = "INSERT INTO user_card_stats (user_id, card_count, total_balance, updated_at) " +
+            "SELECT coalesce(a.user_id, u.user_id), " +
+            "coalesce(a.card_count, 0) - coalesce(u.card_count, 0), coalesce(a.total_balance, 0) - coalesce(u.total_balance, 0), now() " +
+            "FROM (SELECT user_id, count(*) AS card_count, coalesce(sum(balance), 0) AS total_balance " +
+            "FROM cards WHERE user_id > ? AND user_id <= ? GROUP BY user_id) a " +
+            "FULL JOIN (SELECT * FROM user_card_stats WHERE user_id > ? AND user_id <= ?) u ON u.user_id = a.user_id " +
+            "WHERE coalesce(a.card_count, 0) <> coalesce(u.card_count, 0) " +
+            "OR coalesce(a.total_balance, 0) <> coalesce(u.total_balance, 0) " +
+            "ORDER BY 1 ON CONFLICT (user_id) DO UPDATE SET " +
+            "card_count = user_card_stats.card_count + EXCLUDED.card_count, " +
+            "total_balance = user_card_stats.total_balance + EXCLUDED.total_balance, updated_at = EXCLUDED.updated_at";
+
+    final JdbcTemplate jdbcTemplate;
+    final TransactionTemplate transactionTemplate;
+    final MeterRegistry meterRegistry;
+
+    @Value("${cards.stats.recompute.enabled:true}")
+    boolean enabled;
+
+    @Value("${cards.stats.recompute.chunk-size:1000}")
+    int chunkSize;
+
+    @Value("${cards.stats.shards:16}")
+    int shards;
+
+    @Scheduled(initialDelayString = "${cards.stats.recompute.initial-delay:PT10M}",
+            fixedDelayString = "${cards.stats.recompute.interval:PT1H}")
+    public void recompute() {
+        if (!enabled) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        try {
+            Integer statusRows = underLock(() -> jdbcTemplate.update(FIX_STATUS_STATS_SQL, shards));
+            if (statusRows == null) {
+                log.debug("Сводку по картам сверяет другой экземпляр, пропускаем");
+                return;
+            }
+            int corrected = statusRows;
+
+            long afterId = 0;
+            Long lastId;
+            while ((lastId = lastUserIdOfChunk(afterId)) != null) {
+                long from = afterId;
+                long to = lastId;
+                try {
+                    Integer userRows = underLock(() -> jdbcTemplate.update(FIX_USER_STATS_SQL, from, to, from, to));
+                    if (userRows == null) {
+                        break;
+                    }
+                    corrected += userRows;
+                } catch (DataAccessException e) {
+                    // Например, пользователя удалили между снимком и записью - порция повторится при следующем запуске
+                    log.warn("Не удалось сверить сводку пользователей с id в ({}, {}]: {}", from, to, e.getMessage());
+                }
+                afterId = lastId;
+            }
+
+            meterRegistry.counter("cards.stats.recompute.corrected").increment(corrected);
+            if (corrected > 0) {
+                log.warn("Сводка по картам расходилась с cards, исправлено строк: {}", corrected);
+            }
+            log.debug("Сверка сводки по картам заняла {} мс", Duration.ofNanos(System.nanoTime() - started).toMillis());
+        } catch (DataAccessException e) {
+            log.warn("Не удалось сверить сводку по картам: {}", e.getMessage());
+        }
+    }
+
+    // Выполняет сверку в отдельной короткой транзакции; null - блокировку держит другой экземпляр
+    private Integer underLock(IntSupplier fix) {
+        return transactionTemplate.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, ADVISORY_LOCK_KEY);
+            return Boolean.TRUE.equals(locked) ? fix.getAsInt() : null;
+        });
+    }
+
+    // Граница следующей порции: id последнего из chunkSize пользователей после afterId (карты есть только у них)
+    private Long lastUserIdOfChunk(long afterId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT max(id) FROM (SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?) chunk",
+                Long.class, afterId, chunkSize);
+    }
+}
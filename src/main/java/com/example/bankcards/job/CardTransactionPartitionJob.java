@@ -0,0 +1,100 @@
+package com.example.bankcards.job;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Обслуживает месячные секции журнала card_transactions:
+ * заранее создает секции на несколько месяцев вперед (вставка в несуществующую секцию упала бы)
+ * и отсоединяет секции старше срока хранения. DETACH PARTITION не переписывает данные -
+ * отсоединенная таблица остается в БД для архивации и удаляется отдельно
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardTransactionPartitionJob {
+
+    static final String PARENT_TABLE = "card_transactions";
+    static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    final JdbcTemplate jdbcTemplate;
+
+    @Value("${ledger.partitions.months-ahead:3}")
+    int monthsAhead;
+
+    @Value("${ledger.partitions.retention-months:0}")
+    int retentionMonths; // 0 - хранить все секции
+
+    // Секция текущего месяца должна существовать до первой операции с картами
+    @PostConstruct
+    void createInitialPartitions() {
+        createUpcomingPartitions();
+    }
+
+    @Scheduled(cron = "${ledger.partitions.cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+        createUpcomingPartitions();
+        detachExpiredPartitions();
+    }
+
+    void createUpcomingPartitions() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                    partitionName(month), PARENT_TABLE, month.atDay(1), month.plusMonths(1).atDay(1)));
+        }
+    }
+
+    void detachExpiredPartitions() {
+        if (retentionMonths <= 0) {
+            return;
+        }
+
+        YearMonth oldestKept = YearMonth.now().minusMonths(retentionMonths);
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = ?", String.class, PARENT_TABLE);
+
+        for (String partition : partitions) {
+            YearMonth month = parseMonth(partition);
+            if (month != null && month.isBefore(oldestKept)) {
+                jdbcTemplate.execute(String.format("ALTER TABLE %s DETACH PARTITION %s", PARENT_TABLE, partition));
+                log.info("Секция журнала {} отсоединена (старше {} мес.)", partition, retentionMonths);
+            }
+        }
+    }
+
+    private String partitionName(YearMonth month) {
+        return PARENT_TABLE + "_p" + month.format(PARTITION_SUFFIX);
+    }
+
+    private YearMonth parseMonth(String partition) {
+        String prefix = PARENT_TABLE + "_p";
+        if (!partition.startsWith(prefix)) {
+            return null; // Секции, созданные вручную, не трогаем
+        }
+        try {
+            return YearMonth.from(LocalDate.parse(partition.substring(prefix.length()) + "01",
+                    DateTimeFormatter.BASIC_ISO_DATE));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
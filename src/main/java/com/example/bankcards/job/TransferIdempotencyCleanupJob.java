@@ -0,0 +1,27 @@
+package com.example.bankcards.job;
+
+import com.example.bankcards.service.TransferIdempotencyService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Удаляет ключи идемпотентности с истекшим TTL, чтобы таблица не росла бесконечно
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TransferIdempotencyCleanupJob {
+
+    final TransferIdempotencyService transferIdempotencyService;
+
+    @Scheduled(fixedDelayString = "${transfer.idempotency.cleanup-interval:PT1H}")
+    public void purgeExpiredKeys() {
+        int deleted = transferIdempotencyService.purgeExpired();
+        if (deleted > 0) {
+            log.info("Удалено просроченных ключей идемпотентности: {}", deleted);
+        }
+    }
+}
@@ -20,6 +20,10 @@ public interface CardMapper {
     @Mapping(target = "user", ignore = true)
     @Mapping(target = "status", ignore = true)
     @Mapping(target = "balance", ignore = true)
+    @Mapping(target = "lastFour", ignore = true)
+    @Mapping(target = "numberHash", ignore = true)
+    @Mapping(target = "keyVersion", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Card toEntity(CardDTO cardDTO);
 
     List<CardDTO> toDtoList(List<Card> cards);
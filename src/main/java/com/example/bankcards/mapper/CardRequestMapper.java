@@ -13,6 +13,10 @@ public interface CardRequestMapper {
     @Mapping(target = "status", ignore = true)
     @Mapping(target = "balance", ignore = true)
     @Mapping(target = "user", ignore = true)
+    @Mapping(target = "lastFour", ignore = true)
+    @Mapping(target = "numberHash", ignore = true)
+    @Mapping(target = "keyVersion", ignore = true)
+    @Mapping(target = "version", ignore = true)
     @Mapping(source = "owner", target = "owner") // Явно маппим owner
     @Mapping(source = "expirationDate", target = "expirationDate") // Явно маппим expirationDate
     //@Mapping(target = "number", ignore = true)
@@ -1,16 +1,73 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.CardView;
 import com.example.bankcards.entity.Card;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface CardRepository extends JpaRepository<Card, Long> {
+// CardSearchRepository - поиск карт по набору необязательных фильтров (CardSpecifications)
+public interface CardRepository extends JpaRepository<Card, Long>, CardSearchRepository {
     List<Card> findAllByUserId(Long userId); // Найти все карты пользователя по его ID
 
     Page<Card> findAllByUserId(Long userId, Pageable pageable); // Найти все карты пользователя с пагинацией
+
+    // Проекции для списков карт: выбираются только нужные колонки, c.user.id берется из внешнего ключа без JOIN
+    String CARD_VIEW = "SELECT new com.example.bankcards.dto.CardView(c.id, c.encryptedNumber, c.lastFour, c.owner, " +
+            "c.expirationDate, c.status, c.balance, c.user.id) FROM Card c ";
+
+    @Query(value = CARD_VIEW, countQuery = "SELECT count(c) FROM Card c")
+    Page<CardView> findAllViews(Pageable pageable);
+
+    @Query(value = CARD_VIEW + "WHERE c.user.id = :userId",
+            countQuery = "SELECT count(c) FROM Card c WHERE c.user.id = :userId")
+    Page<CardView> findViewsByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    // Keyset-пагинация: WHERE id > :afterId ORDER BY id LIMIT :n. Время не зависит от глубины страницы,
+    // в отличие от OFFSET, и не требует count(*)
+    @Query(CARD_VIEW + "WHERE c.id > :afterId ORDER BY c.id")
+    List<CardView> findViewsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // То же для карт пользователя (индекс idx_cards_user_id_id)
+    @Query(CARD_VIEW + "WHERE c.user.id = :userId AND c.id > :afterId ORDER BY c.id")
+    List<CardView> findViewsByUserIdAfter(@Param("userId") Long userId, @Param("afterId") Long afterId, Limit limit);
+
+    Optional<Card> findByNumberHash(String numberHash); // Найти карту по слепому индексу номера (уникальный индекс)
+
+    boolean existsByNumberHash(String numberHash); // Проверить, что карта с таким номером уже выпущена
+
+    // SELECT ... FOR UPDATE. Строки блокируются в порядке возрастания id, поэтому встречные переводы
+    // (A -> B и B -> A) захватывают блокировки в одном и том же порядке и не могут попасть в deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    // Атомарное списание одним UPDATE без загрузки сущности. 0 измененных строк означает, что карта
+    // не найдена, чужая, не активна или на ней недостаточно средств. Версия увеличивается, чтобы
+    // параллельный оптимистичный перевод увидел конфликт
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance - :amount, c.version = c.version + 1 " +
+            "WHERE c.id = :id AND c.user.id = :userId " +
+            "AND c.status = com.example.bankcards.entity.CardStatus.ACTIVE AND c.balance >= :amount")
+    int debitIfActiveAndSufficient(@Param("id") Long id, @Param("userId") Long userId, @Param("amount") BigDecimal amount);
+
+    // Атомарное зачисление: 0 измененных строк - карта не найдена, чужая или не активна
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance + :amount, c.version = c.version + 1 " +
+            "WHERE c.id = :id AND c.user.id = :userId " +
+            "AND c.status = com.example.bankcards.entity.CardStatus.ACTIVE")
+    int creditIfActive(@Param("id") Long id, @Param("userId") Long userId, @Param("amount") BigDecimal amount);
 }
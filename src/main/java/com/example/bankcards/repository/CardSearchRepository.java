@@ -0,0 +1,13 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardSearchCriteria;
+import com.example.bankcards.dto.CardView;
+
+import java.util.List;
+
+// Поиск карт администратором (GET /cards/search), реализация - CardSearchRepositoryImpl
+public interface CardSearchRepository {
+
+    // Карты, подходящие под фильтры, с id > afterId по возрастанию id, не больше limit
+    List<CardView> searchViews(CardSearchCriteria criteria, long afterId, int limit);
+}
@@ -0,0 +1,45 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardSearchCriteria;
+import com.example.bankcards.dto.CardView;
+import com.example.bankcards.entity.Card;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * Условия из CardSpecifications, но результат - проекция CardView, как у остальных списков карт:
+ * выбираются только нужные колонки, сущности Card не создаются. Страницы - keyset по id
+ * (WHERE id > :afterId ORDER BY id LIMIT :n), поэтому нет ни OFFSET, ни count(*) по всем подходящим картам
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardSearchRepositoryImpl implements CardSearchRepository {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    public List<CardView> searchViews(CardSearchCriteria criteria, long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CardView> query = cb.createQuery(CardView.class);
+        Root<Card> card = query.from(Card.class);
+
+        query.select(cb.construct(CardView.class,
+                        card.get("id"), card.get("encryptedNumber"), card.get("lastFour"), card.get("owner"),
+                        card.get("expirationDate"), card.get("status"), card.get("balance"),
+                        card.get("user").get("id"))) // Внешний ключ, без JOIN
+                .where(CardSpecifications.matching(criteria).toPredicate(card, query, cb),
+                        cb.greaterThan(card.get("id"), afterId))
+                .orderBy(cb.asc(card.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
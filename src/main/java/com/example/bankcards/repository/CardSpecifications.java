@@ -0,0 +1,64 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardSearchCriteria;
+import com.example.bankcards.entity.Card;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Условия поиска карт для CardSearchRepositoryImpl. Каждое условие записано так, чтобы PostgreSQL мог
+ * использовать индекс из миграции 20251009000000-add-cards-search-indexes.yml:
+ * владелец - upper(owner) LIKE 'ПРЕФИКС%' (индекс по upper(owner) varchar_pattern_ops),
+ * статус вместе с пользователем - (user_id, status), неактивные карты - частичный индекс WHERE status <> 'ACTIVE'
+ */
+public final class CardSpecifications {
+
+    static final char LIKE_ESCAPE = '\\';
+
+    private CardSpecifications() {
+    }
+
+    public static Specification<Card> matching(CardSearchCriteria criteria) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (criteria.getUserId() != null) {
+                predicates.add(cb.equal(root.get("user").get("id"), criteria.getUserId())); // Внешний ключ, без JOIN
+            }
+            if (criteria.getStatus() != null) {
+                predicates.add(cb.equal(root.get("status"), criteria.getStatus()));
+            }
+            if (criteria.getExpiresFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("expirationDate"), criteria.getExpiresFrom()));
+            }
+            if (criteria.getExpiresTo() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("expirationDate"), criteria.getExpiresTo()));
+            }
+            if (criteria.getMinBalance() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("balance"), criteria.getMinBalance()));
+            }
+            if (criteria.getMaxBalance() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("balance"), criteria.getMaxBalance()));
+            }
+            if (StringUtils.hasText(criteria.getOwnerPrefix())) {
+                predicates.add(cb.like(cb.upper(root.get("owner")), likePrefix(criteria.getOwnerPrefix()), LIKE_ESCAPE));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // Префикс для LIKE: символы % и _ из запроса ищутся буквально, а не как шаблон
+    private static String likePrefix(String prefix) {
+        String escaped = prefix.trim().toUpperCase(Locale.ROOT)
+                .replace(String.valueOf(LIKE_ESCAPE), String.valueOf(LIKE_ESCAPE) + LIKE_ESCAPE)
+                .replace("%", LIKE_ESCAPE + "%")
+                .replace("_", LIKE_ESCAPE + "_");
+        return escaped + "%";
+    }
+}
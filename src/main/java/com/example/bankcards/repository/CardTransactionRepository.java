@@ -0,0 +1,27 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardTransaction;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CardTransactionRepository extends JpaRepository<CardTransaction, Long> {
+
+    // Первая страница истории карты (новые записи сверху). Читается по индексу (card_id, created_at, id)
+    List<CardTransaction> findByCardIdOrderByCreatedAtDescIdDesc(Long cardId, Limit limit);
+
+    // Следующая страница: продолжаем строго после последней записи предыдущей страницы, без OFFSET
+    @Query("SELECT t FROM CardTransaction t WHERE t.cardId = :cardId " +
+            "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id)) " +
+            "ORDER BY t.createdAt DESC, t.id DESC")
+    List<CardTransaction> findPageBefore(@Param("cardId") Long cardId,
+                                         @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("id") Long id,
+                                         Limit limit);
+}
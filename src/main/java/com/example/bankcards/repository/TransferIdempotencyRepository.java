@@ -0,0 +1,28 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.TransferIdempotency;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface TransferIdempotencyRepository extends JpaRepository<TransferIdempotency, Long> {
+
+    Optional<TransferIdempotency> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    @Modifying
+    @Query("DELETE FROM TransferIdempotency t WHERE t.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    // Истекший, но еще не удаленный очисткой ключ: иначе повторное использование ключа упрется в уникальный индекс
+    @Modifying
+    @Query("DELETE FROM TransferIdempotency t WHERE t.userId = :userId AND t.idempotencyKey = :idempotencyKey " +
+            "AND t.expiresAt <= :now")
+    int deleteExpiredKey(@Param("userId") Long userId, @Param("idempotencyKey") String idempotencyKey,
+                         @Param("now") LocalDateTime now);
+}
@@ -1,9 +1,11 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +13,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
 
     boolean existsByUsername(String username);
+
+    // Keyset-пагинация справочника пользователей: WHERE id > :afterId ORDER BY id LIMIT :n
+    List<User> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
 }
@@ -0,0 +1,43 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.Role;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+// Текущий пользователь: id из проверенных claims JWT, имя и роль из кэша UserDetails (см. JwtFilter).
+// Контроллеры и сервисы берут id и роль отсюда, не обращаясь к таблице users
+@Getter
+public class JwtUserPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String username;
+    private final Role role;
+    private final List<GrantedAuthority> authorities;
+
+    public JwtUserPrincipal(Long id, String username, Role role) {
+        this.id = id;
+        this.username = username;
+        this.role = role;
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    public boolean isAdmin() {
+        return role == Role.ADMIN;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    // Пароль в токене не передается и после аутентификации не нужен
+    @Override
+    public String getPassword() {
+        return null;
+    }
+}
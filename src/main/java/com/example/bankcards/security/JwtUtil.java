@@ -1,15 +1,32 @@
 package com.example.bankcards.security;
 
+import com.example.bankcards.entity.Role;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
 
 @Component
+@RequiredArgsConstructor
 public class JwtUtil {
 
     @Value("${jwt.secret}")
@@ -18,42 +35,127 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private Long expiration;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    // Ключ и парсер строятся один раз при старте: JwtParser неизменяемый и потокобезопасный
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    // Необязательный кэш проверенных токенов: клиенты повторяют один и тот же токен весь срок его жизни
+    @Value("${jwt.verified-cache.enabled:false}")
+    private boolean verifiedCacheEnabled;
+
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheMaxSize;
+
+    private final MeterRegistry meterRegistry;
+
+    private Cache<String, Claims> verifiedTokens; // null, если кэш выключен
+
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    });
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+
+        if (verifiedCacheEnabled) {
+            verifiedTokens = Caffeine.newBuilder()
+                    .maximumSize(verifiedCacheMaxSize)
+                    .expireAfter(new UntilTokenExpiry(expiration))
+                    .recordStats()
+                    .build();
+            // Доля попаданий и вытеснения: cache.gets{result=hit|miss} и cache.evictions с тегом cache=jwtClaims
+            CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwtClaims");
+        }
     }
 
+    // Роль в токен не пишется: JwtFilter берет ее из актуальных UserDetails, а не из claims
     public String generateToken(String username, Long userId) {
         return Jwts.builder()
                 .setSubject(username)
                 .claim("userId", userId)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
-    public String extractUsername(String token) {
-        return extractAllClaims(token).getSubject();
-    }
+    // Проверяет подпись и срок действия и возвращает claims. null - токен недействителен.
+    // JwtFilter вызывает его один раз на запрос и дальше работает только с claims
+    public Claims parseClaims(String token) {
+        if (verifiedTokens == null) {
+            return verify(token);
+        }
 
-    public Long extractUserId(String token) {
-        return extractAllClaims(token).get("userId", Long.class);
+        // Хэш токена как ключ: сами токены в памяти не хранятся. Попадание в кэш означает,
+        // что токен с такой подписью уже проверен, поэтому HMAC повторно не считается
+        String digest = digest(token);
+        Claims claims = verifiedTokens.getIfPresent(digest);
+        if (claims == null) {
+            claims = verify(token);
+            if (claims != null) {
+                verifiedTokens.put(digest, claims);
+            }
+        }
+        return claims;
     }
 
-    public boolean validateToken(String token) {
+    private Claims verify(String token) {
         try {
-            extractAllClaims(token);
-            return true;
-        } catch (Exception e) {
-            return false;
+            return parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
         }
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private String digest(String token) {
+        return HexFormat.of().formatHex(sha256.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Запись живет до exp токена: просроченный токен из кэша никогда не вернется
+    private static class UntilTokenExpiry implements Expiry<String, Claims> {
+        private final long maxTtlNanos;
+
+        UntilTokenExpiry(long maxTtlMillis) {
+            this.maxTtlNanos = TimeUnit.MILLISECONDS.toNanos(maxTtlMillis);
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date exp = claims.getExpiration();
+            if (exp == null) {
+                return maxTtlNanos;
+            }
+            return Math.max(0, TimeUnit.MILLISECONDS.toNanos(exp.getTime() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    // Пользователь для SecurityContext: id - из claims токена, роль - из актуальных UserDetails.
+    // null - в токене нет userId
+    public JwtUserPrincipal toPrincipal(Claims claims, UserDetails current) {
+        Long userId = claims.get("userId", Long.class);
+        if (userId == null) {
+            return null;
+        }
+        boolean isAdmin = current.getAuthorities().stream()
+                .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
+        return new JwtUserPrincipal(userId, current.getUsername(), isAdmin ? Role.ADMIN : Role.USER);
     }
 }
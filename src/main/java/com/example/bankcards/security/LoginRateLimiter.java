@@ -0,0 +1,144 @@
+package com.example.bankcards.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Ограничение частоты попыток входа по имени пользователя и по IP клиента (скользящее окно).
+// По IP считается каждая попытка, по имени - только неудачные: владелец, который часто входит
+// с верным паролем, не блокируется, а перебор паролей к одной учетной записи - блокируется.
+// Счетчики в памяти без блокировок: состояние окна меняется через compareAndSet.
+// Таблицы счетчиков ограничены по размеру и очищаются от неактивных ключей, поэтому перебор
+// случайных имен или адресов не раздувает память
+@Component
+public class LoginRateLimiter {
+
+    @Value("${auth.login.rate-limit.window:PT1M}")
+    private Duration window;
+
+    @Value("${auth.login.rate-limit.per-user:10}")
+    private int perUserLimit;
+
+    @Value("${auth.login.rate-limit.per-ip:50}")
+    private int perIpLimit;
+
+    @Value("${auth.login.rate-limit.max-tracked-keys:100000}")
+    private long maxTrackedKeys;
+
+    private Cache<String, SlidingWindowCounter> userCounters;
+    private Cache<String, SlidingWindowCounter> ipCounters;
+
+    @PostConstruct
+    void init() {
+        userCounters = newCounterTable();
+        ipCounters = newCounterTable();
+    }
+
+    // Только проверка, попытка не учитывается. Параллельные попытки могут пройти проверку до того, как
+    // их неудачи будут записаны, но их число ограничено пулом проверки паролей и лимитом по IP
+    public boolean isUserBlocked(String username) {
+        if (username == null) {
+            return false;
+        }
+        SlidingWindowCounter counter = userCounters.getIfPresent(username);
+        return counter != null && counter.isExhausted(System.currentTimeMillis(), window.toMillis(), perUserLimit);
+    }
+
+    public void recordFailureForUser(String username) {
+        if (username != null) {
+            userCounters.get(username, k -> new SlidingWindowCounter())
+                    .record(System.currentTimeMillis(), window.toMillis());
+        }
+    }
+
+    public boolean tryAcquireForIp(String clientIp) {
+        return tryAcquire(ipCounters, clientIp, perIpLimit);
+    }
+
+    public long getWindowSeconds() {
+        return Math.max(1, window.toSeconds());
+    }
+
+    private boolean tryAcquire(Cache<String, SlidingWindowCounter> counters, String key, int limit) {
+        if (key == null) {
+            return true;
+        }
+        return counters.get(key, k -> new SlidingWindowCounter())
+                .tryAcquire(System.currentTimeMillis(), window.toMillis(), limit);
+    }
+
+    private Cache<String, SlidingWindowCounter> newCounterTable() {
+        return Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterAccess(window.multipliedBy(2)) // Через два окна без попыток счетчик уже нулевой
+                .build();
+    }
+
+    // Скользящее окно по двум соседним интервалам: попытки предыдущего интервала учитываются с весом,
+    // убывающим по мере прохождения текущего. Точнее фиксированного окна и без хранения отметок времени
+    static class SlidingWindowCounter {
+
+        private final AtomicReference<Window> state = new AtomicReference<>(new Window(0, 0, 0));
+
+        boolean tryAcquire(long nowMillis, long windowMillis, int limit) {
+            long index = nowMillis / windowMillis;
+
+            while (true) {
+                Window current = state.get();
+                Window rolled = current.rollTo(index);
+
+                if (rolled.weightedCount(nowMillis, windowMillis) >= limit) {
+                    return false; // Отклоненная попытка не учитывается
+                }
+                if (state.compareAndSet(current, rolled.withAttempt())) {
+                    return true;
+                }
+            }
+        }
+
+        boolean isExhausted(long nowMillis, long windowMillis, int limit) {
+            return state.get().rollTo(nowMillis / windowMillis).weightedCount(nowMillis, windowMillis) >= limit;
+        }
+
+        void record(long nowMillis, long windowMillis) {
+            long index = nowMillis / windowMillis;
+            while (true) {
+                Window current = state.get();
+                Window rolled = current.rollTo(index);
+                if (state.compareAndSet(current, rolled.withAttempt())) {
+                    return;
+                }
+            }
+        }
+
+        private static double previousWeight(long nowMillis, long windowMillis) {
+            return 1.0 - (double) (nowMillis % windowMillis) / windowMillis;
+        }
+
+        private record Window(long index, int previous, int current) {
+            // Отметка времени из уже прошедшего интервала считается началом текущего
+            double weightedCount(long nowMillis, long windowMillis) {
+                return previous * previousWeight(Math.max(nowMillis, index * windowMillis), windowMillis) + current;
+            }
+
+            Window withAttempt() {
+                return new Window(index, previous, current + 1);
+            }
+
+            Window rollTo(long newIndex) {
+                // Поток с более старой отметкой мог опоздать к смене интервала: окно назад не сдвигается,
+                // иначе CAS сбросил бы уже учтенные попытки
+                if (newIndex <= index) {
+                    return this;
+                }
+                // Текущий интервал становится предыдущим; если прошло больше интервала - оба пустые
+                return new Window(newIndex, newIndex == index + 1 ? current : 0, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.bankcards.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+// Кэш UserDetails для JwtFilter: без него каждый HTTP-запрос с токеном делал запрос к таблице users.
+// Записи живут не дольше security.user-cache.ttl, а при изменении роли или удалении пользователя удаляются сразу
+@Component
+@RequiredArgsConstructor
+public class UserDetailsCache {
+
+    private final UserDetailsService userDetailsService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${security.user-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${security.user-cache.ttl:PT5M}")
+    private Duration ttl;
+
+    private Cache<String, UserDetails> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // Метрики cache.gets{result=hit|miss}, cache.evictions и cache.size с тегом cache=userDetails
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+    }
+
+    public UserDetails get(String username) {
+        return cache.get(username, userDetailsService::loadUserByUsername);
+    }
+
+    // Удаляет запись после коммита: если удалить раньше, параллельный запрос успеет закэшировать старые данные
+    public void evictAfterCommit(String username) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(username);
+                }
+            });
+        } else {
+            cache.invalidate(username);
+        }
+    }
+}
@@ -3,5 +3,5 @@ package com.example.bankcards.service;
 import com.example.bankcards.dto.AuthResponse;
 
 public interface AuthService {
-    AuthResponse authenticate(String username, String password);
+    AuthResponse authenticate(String username, String password, String clientIp);
 }
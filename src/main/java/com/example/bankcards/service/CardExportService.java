@@ -0,0 +1,11 @@
+package com.example.bankcards.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface CardExportService {
+
+    // Потоковая выгрузка всех карт в CSV (id,cardNumber,owner,expirationDate,status,balance,userId) или NDJSON (объекты CardDTO).
+    // Номер карты выгружается только маскированным
+    void exportCards(OutputStream out, boolean ndjson) throws IOException;
+}
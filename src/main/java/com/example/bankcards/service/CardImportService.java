@@ -0,0 +1,11 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardImportResultDTO;
+
+import java.io.InputStream;
+
+public interface CardImportService {
+
+    // Потоковый импорт карт из CSV (number,owner,expirationDate,userId) или NDJSON (объекты CardRequestDTO)
+    CardImportResultDTO importCards(InputStream input, boolean ndjson);
+}
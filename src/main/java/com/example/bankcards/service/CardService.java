@@ -2,6 +2,11 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.dto.CardRequestDTO;
+import com.example.bankcards.dto.CardSearchCriteria;
+import com.example.bankcards.dto.CardTransactionDTO;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResultDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -12,15 +17,28 @@ public interface CardService {
     // Для пользователя
     Page<CardDTO> getUserCards(Long userId, Pageable pageable); // С пагинацией
 
+    CursorPage<CardDTO> getUserCards(Long userId, String cursor, int size); // Курсорная пагинация
+
     void transferBetweenOwnCards(Long userId, Long fromCardId, Long toCardId, BigDecimal amount);
 
+    // true - перевод с этим ключом идемпотентности уже был выполнен раньше и повторно не проводился
+    boolean transferBetweenOwnCards(Long userId, Long fromCardId, Long toCardId, BigDecimal amount, String idempotencyKey);
+
+    List<TransferResultDTO> transferBatch(Long userId, List<TransferRequest> transfers); // Результат по каждому переводу
+
     BigDecimal getCardBalance(Long userId, Long cardId);
 
+    CursorPage<CardTransactionDTO> getCardTransactions(Long cardId, String cursor, int size); // История операций по карте
+
     // Для администратора
     CardDTO getCardById(Long id);
 
     Page<CardDTO> getAllCards(Pageable pageable); // Все карты с пагинацией
 
+    CursorPage<CardDTO> getAllCards(String cursor, int size); // Все карты, курсорная пагинация
+
+    CursorPage<CardDTO> searchCards(CardSearchCriteria criteria, String cursor, int size); // Поиск по статусу, сроку, балансу, владельцу
+
     CardDTO createCard(CardRequestDTO cardRequestDTO);
 
     CardDTO blockCard(Long cardId);
@@ -0,0 +1,27 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardStatsDTO;
+import com.example.bankcards.dto.UserCardStatsDTO;
+import com.example.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+public interface CardStatsService {
+
+    CardStatsDTO getStats(); // Количество карт и сумма балансов по статусам
+
+    UserCardStatsDTO getUserStats(Long userId); // То же по картам одного пользователя
+
+    // Методы record* вызываются внутри транзакции, изменяющей cards, чтобы сводка менялась атомарно вместе с картами.
+    // Переводы между своими картами их не вызывают: обе карты активны и принадлежат одному пользователю, итоги не меняются
+    void recordCardAdded(Long userId, CardStatus status, BigDecimal balance);
+
+    void recordCardsImported(Map<Long, Long> cardsByUserId); // Активные карты с нулевым балансом, число карт по userId
+
+    void recordCardRemoved(Long userId, CardStatus status, BigDecimal balance);
+
+    void recordStatusChange(Long userId, CardStatus from, CardStatus to, BigDecimal balance);
+
+    void recordUserCardsRemoved(Long userId); // Вызывается до удаления пользователя вместе с картами
+}
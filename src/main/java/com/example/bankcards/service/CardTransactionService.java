@@ -0,0 +1,18 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardTransactionDTO;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.entity.Card;
+
+import java.math.BigDecimal;
+
+public interface CardTransactionService {
+    // Запись в журнал выполняется в транзакции вызывающей операции
+    void recordTransfer(Long userId, Long fromCardId, Long toCardId, BigDecimal amount);
+
+    void recordCardCreated(Card card);
+
+    void recordStatusChange(Card card);
+
+    CursorPage<CardTransactionDTO> getCardTransactions(Long cardId, String cursor, int size);
+}
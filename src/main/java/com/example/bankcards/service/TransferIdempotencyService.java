@@ -0,0 +1,14 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.TransferIdempotency;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+public interface TransferIdempotencyService {
+    Optional<TransferIdempotency> findCompleted(Long userId, String idempotencyKey); // Сначала кэш, потом таблица
+
+    void register(Long userId, String idempotencyKey, Long fromCardId, Long toCardId, BigDecimal amount); // Только внутри транзакции перевода
+
+    int purgeExpired();
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.service;
+
+// Способ защиты перевода от параллельных изменений баланса (настраивается через transfer.strategy)
+public enum TransferStrategy {
+    PESSIMISTIC, // SELECT ... FOR UPDATE: строки карт блокируются до конца транзакции
+    OPTIMISTIC, // Проверка версии (@Version) при записи + повтор перевода при конфликте
+    ATOMIC // Два условных UPDATE без чтения карт: проверки баланса и статуса выполняет сама БД
+}
@@ -1,9 +1,12 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.UserCreateDTO;
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.dto.UserUpdateDTO;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 public interface UserService {
@@ -12,6 +15,10 @@ public interface UserService {
 
     List<UserDTO> getAllUsers();
 
+    CursorPage<UserDTO> getUsers(String cursor, int size); // Курсорная пагинация вместо загрузки всей таблицы
+
+    void exportUsers(OutputStream out) throws IOException; // NDJSON-выгрузка всех пользователей потоком
+
     UserDTO createUser(UserCreateDTO userCreateDTO);
 
     UserDTO updateUser(Long id, UserUpdateDTO userUpdateDTO);
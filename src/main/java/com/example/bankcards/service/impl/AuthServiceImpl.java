@@ -1,6 +1,13 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.example.bankcards.security.LoginRateLimiter;
 import com.example.bankcards.service.AuthService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import com.example.bankcards.dto.AuthResponse;
@@ -10,6 +17,13 @@ import com.example.bankcards.security.JwtUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 @Service
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
@@ -17,17 +31,69 @@ public class AuthServiceImpl implements AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
+    private final LoginRateLimiter loginRateLimiter;
+    @Qualifier("loginExecutor")
+    private final ThreadPoolTaskExecutor loginExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${auth.login.timeout:PT5S}")
+    private Duration loginTimeout;
 
     @Override
-    public AuthResponse authenticate(String username, String password) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    public AuthResponse authenticate(String username, String password, String clientIp) {
+        // Лимиты проверяются до BCrypt: перебор паролей отсекается, не нагружая процессор
+        if (!loginRateLimiter.tryAcquireForIp(clientIp)) {
+            throw rejected("ip", "Слишком много попыток входа с этого адреса, повторите позже");
+        }
+        if (loginRateLimiter.isUserBlocked(username)) {
+            throw rejected("user", "Слишком много попыток входа для этого пользователя, повторите позже");
+        }
 
-        if (!passwordEncoder.matches(password, user.getPassword())) {
+        User user = userRepository.findByUsername(username).orElse(null);
+        if (user == null) {
+            loginRateLimiter.recordFailureForUser(username);
+            throw new RuntimeException("User not found");
+        }
+
+        if (!passwordMatches(password, user.getPassword())) {
+            loginRateLimiter.recordFailureForUser(username);
             throw new RuntimeException("Invalid password");
         }
 
         String token = jwtUtil.generateToken(user.getUsername(), user.getId());
         return new AuthResponse(token, user.getId());
     }
+
+    // BCrypt выполняется на отдельном ограниченном пуле: при заполненной очереди запрос сразу получает 429.
+    // При тайм-ауте задача отменяется: если она еще в очереди, BCrypt для нее не запустится. Уже идущий
+    // BCrypt прерывание не проверяет и дорабатывает, но таких вычислений не больше auth.login.threads,
+    // а ожидающих - не больше auth.login.queue-capacity
+    private boolean passwordMatches(String password, String encodedPassword) {
+        Timer hashTimer = meterRegistry.timer("auth.login.hash");
+
+        FutureTask<Boolean> match = new FutureTask<>(
+                () -> hashTimer.record(() -> passwordEncoder.matches(password, encodedPassword)));
+        try {
+            loginExecutor.execute(match);
+        } catch (RejectedExecutionException e) {
+            throw rejected("queue_full", "Сервис входа перегружен, повторите позже");
+        }
+
+        try {
+            return match.get(loginTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            match.cancel(true);
+            throw rejected("timeout", "Сервис входа перегружен, повторите позже");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Проверка пароля прервана", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ошибка проверки пароля", e.getCause());
+        }
+    }
+
+    private TooManyRequestsException rejected(String reason, String message) {
+        meterRegistry.counter("auth.login.rejected", "reason", reason).increment();
+        return new TooManyRequestsException(message, loginRateLimiter.getWindowSeconds());
+    }
 }
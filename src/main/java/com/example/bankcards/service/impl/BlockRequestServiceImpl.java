@@ -9,6 +9,8 @@ import com.example.bankcards.repository.BlockRequestRepository;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.BlockRequestService;
+import com.example.bankcards.service.CardStatsService;
+import com.example.bankcards.service.CardTransactionService;
 import com.example.bankcards.util.EncryptionUtil;
 import com.example.bankcards.util.MaskingUtil;
 import lombok.AccessLevel;
@@ -32,6 +34,8 @@ public class BlockRequestServiceImpl implements BlockRequestService {
     final BlockRequestMapper blockRequestMapper;
     final MaskingUtil maskingUtil;
     final EncryptionUtil encryptionUtil;
+    final CardTransactionService cardTransactionService;
+    final CardStatsService cardStatsService;
 
     @Override
     @Transactional
@@ -106,9 +110,15 @@ public class BlockRequestServiceImpl implements BlockRequestService {
             throw new ValidationException("Запрос уже обработан");
         }
 
-        Card card = blockRequest.getCard();
+        // Карта блокируется до изменения сводки - тот же порядок блокировок, что в CardServiceImpl
+        Card card = cardRepository.findAllByIdInForUpdate(List.of(blockRequest.getCard().getId())).stream()
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException("Карта не найдена"));
+        CardStatus previousStatus = card.getStatus();
         card.setStatus(CardStatus.BLOCKED);
         cardRepository.save(card);
+        cardTransactionService.recordStatusChange(card);
+        cardStatsService.recordStatusChange(card.getUser().getId(), previousStatus, CardStatus.BLOCKED, card.getBalance());
 
         blockRequest.setStatus(BlockRequestStatus.APPROVED);
         blockRequest.setProcessedAt(LocalDateTime.now());
@@ -152,8 +162,13 @@ public class BlockRequestServiceImpl implements BlockRequestService {
 
         // ДОБАВЛЕНО: Обработка маскировки номера карты
         try {
-            String decryptedNumber = encryptionUtil.decrypt(blockRequest.getCard().getEncryptedNumber());
-            dto.setMaskedCardNumber(maskingUtil.maskCardNumber(decryptedNumber));
+            Card card = blockRequest.getCard();
+            if (card.getLastFour() != null) {
+                dto.setMaskedCardNumber(maskingUtil.maskLastFour(card.getLastFour()));
+            } else {
+                String decryptedNumber = encryptionUtil.decrypt(card.getEncryptedNumber());
+                dto.setMaskedCardNumber(maskingUtil.maskCardNumber(decryptedNumber));
+            }
         } catch (Exception e) {
             dto.setMaskedCardNumber("**** **** **** ****");
         }
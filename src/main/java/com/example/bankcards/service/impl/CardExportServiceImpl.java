@@ -0,0 +1,157 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.service.CardExportService;
+import com.example.bankcards.util.EncryptionUtil;
+import com.example.bankcards.util.MaskingUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выгрузка карт без загрузки таблицы в память: строки читаются курсором PostgreSQL (TYPE_FORWARD_ONLY + fetch size
+ * внутри read-only транзакции) порциями по cards.export.fetch-size и сразу пишутся в ответ.
+ * Каждые cards.export.flush-rows строк буфер сбрасывается клиенту, чтобы выгрузка шла равномерно, а не одним куском в конце.
+ * Скорость выгрузки (строк в секунду) пишется в лог и в метрику cards.export.rows
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardExportServiceImpl implements CardExportService {
+
+    static final String SELECT_CARDS_SQL = "SELECT id, encrypted_number, last_four, owner, expiration_date, status, " +
+            "balance, user_id FROM cards ORDER BY id";
+    static final String CSV_HEADER = "id,cardNumber,owner,expirationDate,status,balance,userId\n";
+
+    final JdbcTemplate jdbcTemplate;
+    final ObjectMapper objectMapper;
+    final EncryptionUtil encryptionUtil;
+    final MaskingUtil maskingUtil;
+    final MeterRegistry meterRegistry;
+
+    @Value("${cards.export.fetch-size:500}")
+    int fetchSize;
+
+    @Value("${cards.export.flush-rows:1000}")
+    int flushRows;
+
+    @Override
+    @Transactional(readOnly = true) // Курсор PostgreSQL работает только внутри транзакции, иначе драйвер читает все строки сразу
+    public void exportCards(OutputStream out, boolean ndjson) throws IOException {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long[] rows = {0};
+        long started = System.nanoTime();
+        boolean completed = false;
+
+        try {
+            if (!ndjson) {
+                writer.write(CSV_HEADER);
+            }
+
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(SELECT_CARDS_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                return ps;
+            }, rs -> {
+                CardDTO card = toDto(rs);
+                try {
+                    if (ndjson) {
+                        writer.write(objectMapper.writeValueAsString(card));
+                        writer.write('\n');
+                    } else {
+                        writeCsv(writer, card);
+                    }
+                    if (++rows[0] % flushRows == 0) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    // Клиент закрыл соединение - прекращаем чтение курсора
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            writer.flush();
+            completed = true;
+        } finally {
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            long rowsPerSecond = elapsedMs > 0 ? rows[0] * 1000 / elapsedMs : rows[0];
+            meterRegistry.counter("cards.export.rows", "format", ndjson ? "ndjson" : "csv").increment(rows[0]);
+            log.info("Выгрузка карт {}: {} строк за {} мс ({} строк/с)",
+                    completed ? "завершена" : "прервана", rows[0], elapsedMs, rowsPerSecond);
+        }
+    }
+
+    private CardDTO toDto(ResultSet rs) throws SQLException {
+        // Номер расшифровывается только у карт, для которых еще не заполнена колонка last_four
+        String lastFour = rs.getString("last_four");
+        String cardNumber = lastFour != null
+                ? maskingUtil.maskLastFour(lastFour)
+                : maskingUtil.maskCardNumber(encryptionUtil.decrypt(rs.getString("encrypted_number")));
+        Date expirationDate = rs.getDate("expiration_date");
+
+        return CardDTO.builder()
+                .id(rs.getLong("id"))
+                .cardNumber(cardNumber)
+                .owner(rs.getString("owner"))
+                .expirationDate(expirationDate != null ? expirationDate.toLocalDate() : null)
+                .status(CardStatus.valueOf(rs.getString("status")))
+                .balance(rs.getBigDecimal("balance"))
+                .userId(rs.getLong("user_id"))
+                .build();
+    }
+
+    private void writeCsv(Writer writer, CardDTO card) throws IOException {
+        writer.write(String.valueOf(card.getId()));
+        writer.write(',');
+        writer.write(card.getCardNumber());
+        writer.write(',');
+        writer.write(csvValue(card.getOwner()));
+        writer.write(',');
+        writer.write(card.getExpirationDate() != null ? card.getExpirationDate().toString() : "");
+        writer.write(',');
+        writer.write(card.getStatus().name());
+        writer.write(',');
+        writer.write(card.getBalance().toPlainString());
+        writer.write(',');
+        writer.write(String.valueOf(card.getUserId()));
+        writer.write('\n');
+    }
+
+    // Значение в кавычках, если в нем есть запятая, кавычка или перевод строки (RFC 4180)
+    private String csvValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardImportErrorDTO;
+import com.example.bankcards.dto.CardImportResultDTO;
+import com.example.bankcards.dto.CardRequestDTO;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.CardTransactionType;
+import com.example.bankcards.exception.ValidationException;
+import com.example.bankcards.service.CardImportService;
+import com.example.bankcards.service.CardStatsService;
+import com.example.bankcards.util.BoundedLineReader;
+import com.example.bankcards.util.CardNumberHasher;
+import com.example.bankcards.util.CsvReader;
+import com.example.bankcards.util.EncryptionUtil;
+import com.example.bankcards.util.MaskingUtil;
+import com.example.bankcards.util.ValidationUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.Validator;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Импорт карт без буферизации файла: строки читаются потоком и обрабатываются порциями по cards.import.chunk-size.
+ * Для каждой порции номера проверяются, шифруются и хэшируются параллельно на ограниченном пуле cardImportExecutor,
+ * затем порция записывается одной транзакцией JDBC-пакетом. В памяти одновременно находится только одна порция
+ * и не больше cards.import.max-reported-errors ошибок, а строка файла - не длиннее CsvReader.MAX_RECORD_LENGTH
+ * символов, поэтому расход памяти не зависит от размера файла.
+ * Строка проверяется теми же ограничениями, что и CardRequestDTO в POST /cards, поэтому ошибка одной строки
+ * не отменяет запись порции. Если пакет все же не записался, порция повторяется по одной строке
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardImportServiceImpl implements CardImportService {
+
+    static final String DUPLICATE_KEY_STATE = "23505"; // unique_violation: номер уже есть в cards
+
+    static final String INSERT_CARD_SQL = "INSERT INTO cards (encrypted_number, last_four, number_hash, key_version, " +
+            "owner, expiration_date, status, balance, user_id) VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?)";
+
+    // Запись CARD_CREATED в журнал - как у createCard, но одним запросом на всю порцию
+    static final String RECORD_CREATED_SQL = "INSERT INTO card_transactions (card_id, user_id, type, amount, status, created_at) " +
+            "SELECT id, user_id, ?, balance, status, ? FROM cards WHERE number_hash = ANY (?)";
+
+    final JdbcTemplate jdbcTemplate;
+    final TransactionTemplate transactionTemplate;
+    final ObjectMapper objectMapper;
+    final ValidationUtil validationUtil;
+    final EncryptionUtil encryptionUtil;
+    final MaskingUtil maskingUtil;
+    final CardNumberHasher cardNumberHasher;
+    final MeterRegistry meterRegistry;
+    final CardStatsService cardStatsService;
+    final Validator validator;
+
+    @Qualifier("cardImportExecutor")
+    final ThreadPoolTaskExecutor cardImportExecutor;
+
+    @Value("${cards.import.chunk-size:500}")
+    int chunkSize;
+
+    @Value("${cards.import.max-reported-errors:1000}")
+    int maxReportedErrors;
+
+    @Override
+    public CardImportResultDTO importCards(InputStream input, boolean ndjson) {
+        ImportReport report = new ImportReport(maxReportedErrors);
+
+        try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+            BoundedLineReader lines = ndjson ? new BoundedLineReader(reader, CsvReader.MAX_RECORD_LENGTH) : null;
+            CsvReader csv = ndjson ? null : new CsvReader(reader);
+            List<SourceLine> chunk = new ArrayList<>(chunkSize);
+            String line;
+            // Запись CSV может занимать несколько строк (перевод строки внутри кавычек), NDJSON - всегда одну
+            while ((line = ndjson ? lines.readLine() : csv.readRecord()) != null) {
+                long lineNumber = ndjson ? lines.getLineNumber() : csv.getRecordLine();
+                boolean tooLong = ndjson ? lines.isTruncated() : csv.isRecordTooLong();
+                if (tooLong) {
+                    // Обрезанный текст не разбирается - строка сразу попадает в отчет как ошибочная
+                    chunk.add(new SourceLine(lineNumber, null));
+                } else if (line.isBlank() || (!ndjson && lineNumber == 1 && isCsvHeader(line))) {
+                    continue;
+                } else {
+                    chunk.add(new SourceLine(lineNumber, line));
+                }
+                if (chunk.size() == chunkSize) {
+                    importChunk(chunk, ndjson, report);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, ndjson, report);
+            }
+        } catch (IOException e) {
+            throw new ValidationException("Не удалось прочитать файл импорта: " + e.getMessage());
+        }
+
+        log.info("Импорт карт: строк {}, загружено {}, с ошибками {}", report.total, report.imported, report.failed);
+        return report.toDto();
+    }
+
+    private void importChunk(List<SourceLine> chunk, boolean ndjson, ImportReport report) {
+        List<PreparedRow> rows = prepareInParallel(chunk, ndjson);
+        report.total += rows.size();
+
+        List<PreparedRow> valid = new ArrayList<>(rows.size());
+        for (PreparedRow row : rows) {
+            if (row.error != null) {
+                report.fail(row.line, row.error);
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        // Проверки, требующие БД, выполняются одним запросом на порцию, а не по строке
+        Set<Long> existingUsers = new HashSet<>(jdbcTemplate.query("SELECT id FROM users WHERE id = ANY (?)",
+                ps -> ps.setArray(1, sqlArray(ps.getConnection(), "bigint",
+                        valid.stream().map(row -> row.request.getUserId()).distinct().toArray())),
+                (rs, rowNum) -> rs.getLong(1)));
+        Set<String> takenHashes = new HashSet<>(jdbcTemplate.query("SELECT number_hash FROM cards WHERE number_hash = ANY (?)",
+                ps -> ps.setArray(1, sqlArray(ps.getConnection(), "varchar",
+                        valid.stream().map(row -> row.numberHash).toArray())),
+                (rs, rowNum) -> rs.getString(1)));
+
+        List<PreparedRow> toInsert = new ArrayList<>(valid.size());
+        for (PreparedRow row : valid) {
+            if (!existingUsers.contains(row.request.getUserId())) {
+                report.fail(row.line, "Пользователь не найден с id: " + row.request.getUserId());
+            } else if (!takenHashes.add(row.numberHash)) {
+                // Хэш уже есть в БД или встретился выше в этой же порции
+                report.fail(row.line, "Карта с таким номером уже существует");
+            } else {
+                toInsert.add(row);
+            }
+        }
+        if (toInsert.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertCards(toInsert));
+            report.imported += toInsert.size();
+            meterRegistry.counter("cards.import.rows", "result", "imported").increment(toInsert.size());
+        } catch (DataAccessException e) {
+            // Например, ту же карту параллельно создали через POST /cards: пакет откатывается целиком,
+            // поэтому порция повторяется по одной строке, чтобы найти и пропустить именно ошибочные
+            log.warn("Не удалось записать порцию импорта карт, повтор по строкам: {}", e.getMessage());
+            insertRowByRow(toInsert, report);
+        }
+    }
+
+    private void insertRowByRow(List<PreparedRow> rows, ImportReport report) {
+        for (PreparedRow row : rows) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertCards(List.of(row)));
+                report.imported++;
+                meterRegistry.counter("cards.import.rows", "result", "imported").increment();
+            } catch (DataAccessException e) {
+                log.warn("Не удалось записать строку {} импорта карт: {}", row.line, e.getMessage());
+                report.fail(row.line, DUPLICATE_KEY_STATE.equals(sqlState(e))
+                        ? "Карта с таким номером уже существует" : "Ошибка записи в БД, строка не загружена");
+            }
+        }
+    }
+
+    private String sqlState(DataAccessException e) {
+        return e.getMostSpecificCause() instanceof SQLException sqlException ? sqlException.getSQLState() : null;
+    }
+
+    private void insertCards(List<PreparedRow> rows) {
+        jdbcTemplate.batchUpdate(INSERT_CARD_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setString(1, row.encryptedNumber);
+            ps.setString(2, row.lastFour);
+            ps.setString(3, row.numberHash);
+            ps.setInt(4, row.keyVersion);
+            ps.setString(5, row.request.getOwner());
+            ps.setDate(6, Date.valueOf(row.request.getExpirationDate()));
+            ps.setString(7, CardStatus.ACTIVE.name());
+            ps.setLong(8, row.request.getUserId());
+        });
+
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        jdbcTemplate.update(RECORD_CREATED_SQL, ps -> {
+            ps.setString(1, CardTransactionType.CARD_CREATED.name());
+            ps.setTimestamp(2, createdAt);
+            ps.setArray(3, sqlArray(ps.getConnection(), "varchar", rows.stream().map(row -> row.numberHash).toArray()));
+        });
+
+        cardStatsService.recordCardsImported(rows.stream()
+                .collect(Collectors.groupingBy(row -> row.request.getUserId(), Collectors.counting())));
+    }
+
+    // Порция делится на части по числу потоков пула; шифрование - самая дорогая часть импорта
+    private List<PreparedRow> prepareInParallel(List<SourceLine> chunk, boolean ndjson) {
+        int parallelism = Math.max(1, Math.min(cardImportExecutor.getMaxPoolSize(), chunk.size()));
+        int sliceSize = (chunk.size() + parallelism - 1) / parallelism;
+
+        List<CompletableFuture<List<PreparedRow>>> slices = new ArrayList<>(parallelism);
+        for (int from = 0; from < chunk.size(); from += sliceSize) {
+            List<SourceLine> slice = chunk.subList(from, Math.min(from + sliceSize, chunk.size()));
+            slices.add(CompletableFuture.supplyAsync(() -> {
+                List<PreparedRow> prepared = new ArrayList<>(slice.size());
+                for (SourceLine line : slice) {
+                    prepared.add(prepare(line, ndjson));
+                }
+                return prepared;
+            }, cardImportExecutor));
+        }
+
+        List<PreparedRow> rows = new ArrayList<>(chunk.size());
+        for (CompletableFuture<List<PreparedRow>> slice : slices) {
+            rows.addAll(slice.join());
+        }
+        return rows;
+    }
+
+    private PreparedRow prepare(SourceLine line, boolean ndjson) {
+        PreparedRow row = new PreparedRow(line.number);
+        if (line.text == null) {
+            row.error = "Строка длиннее " + CsvReader.MAX_RECORD_LENGTH + " символов";
+            return row;
+        }
+        try {
+            CardRequestDTO request = ndjson ? parseJson(line.text) : parseCsv(line.text);
+
+            // Ограничения CardRequestDTO (обязательные поля, длина owner под varchar(100) колонки) - как у POST /cards
+            validator.validate(request).stream()
+                    .min(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+                    .ifPresent(violation -> {
+                        throw new ValidationException(violation.getMessage());
+                    });
+            validationUtil.validateCardNumber(request.getNumber());
+            validationUtil.validateExpirationDate(request.getExpirationDate());
+
+            row.request = request;
+            row.encryptedNumber = encryptionUtil.encrypt(request.getNumber());
+            row.keyVersion = encryptionUtil.keyVersionOf(row.encryptedNumber);
+            row.lastFour = maskingUtil.extractLastFour(request.getNumber());
+            row.numberHash = cardNumberHasher.hash(request.getNumber());
+        } catch (RuntimeException e) {
+            row.error = e.getMessage();
+        }
+        return row;
+    }
+
+    // CSV по RFC 4180: number,owner,expirationDate(yyyy-MM-dd),userId - в том же виде, что пишет выгрузка
+    private CardRequestDTO parseCsv(String record) {
+        List<String> fields = CsvReader.parseRecord(record);
+        if (fields.size() != 4) {
+            throw new ValidationException("Ожидается 4 поля: number,owner,expirationDate,userId");
+        }
+        try {
+            return CardRequestDTO.builder()
+                    .number(fields.get(0).trim())
+                    .owner(fields.get(1).trim())
+                    .expirationDate(LocalDate.parse(fields.get(2).trim()))
+                    .userId(Long.valueOf(fields.get(3).trim()))
+                    .build();
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("Неверная дата окончания действия: " + fields.get(2).trim());
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Неверный id пользователя: " + fields.get(3).trim());
+        }
+    }
+
+    private CardRequestDTO parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, CardRequestDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Некорректный JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private boolean isCsvHeader(String line) {
+        return line.trim().toLowerCase(Locale.ROOT).startsWith("number");
+    }
+
+    private Array sqlArray(Connection connection, String type, Object[] values) throws SQLException {
+        return connection.createArrayOf(type, values);
+    }
+
+    // text == null - строка длиннее CsvReader.MAX_RECORD_LENGTH
+    private record SourceLine(long number, String text) {
+    }
+
+    private static class PreparedRow {
+        final long line;
+        CardRequestDTO request;
+        String encryptedNumber;
+        int keyVersion;
+        String lastFour;
+        String numberHash;
+        String error;
+
+        PreparedRow(long line) {
+            this.line = line;
+        }
+    }
+
+    // Итоги импорта; список ошибок ограничен, чтобы отчет по огромному файлу не занял всю память
+    private class ImportReport {
+        final int maxErrors;
+        final List<CardImportErrorDTO> errors = new ArrayList<>();
+        long total;
+        long imported;
+        long failed;
+
+        ImportReport(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        void fail(long line, String error) {
+            failed++;
+            meterRegistry.counter("cards.import.rows", "result", "failed").increment();
+            if (errors.size() < maxErrors) {
+                errors.add(CardImportErrorDTO.builder().line(line).error(error).build());
+            }
+        }
+
+        CardImportResultDTO toDto() {
+            return CardImportResultDTO.builder()
+                    .totalRows(total)
+                    .imported(imported)
+                    .failed(failed)
+                    .errors(errors)
+                    .errorsTruncated(failed > errors.size())
+                    .build();
+        }
+    }
+}
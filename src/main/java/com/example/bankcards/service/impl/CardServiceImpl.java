@@ -2,22 +2,43 @@ package com.example.bankcards.service.impl;
 
 import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.dto.CardRequestDTO;
+import com.example.bankcards.dto.CardSearchCriteria;
+import com.example.bankcards.dto.CardTransactionDTO;
+import com.example.bankcards.dto.CardView;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResultDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.TransferIdempotency;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.ConflictException;
 import com.example.bankcards.exception.NotFoundException;
 import com.example.bankcards.exception.ValidationException;
 import com.example.bankcards.mapper.CardMapper;
 import com.example.bankcards.mapper.CardRequestMapper;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.JwtUserPrincipal;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardStatsService;
+import com.example.bankcards.service.CardTransactionService;
+import com.example.bankcards.service.TransferIdempotencyService;
+import com.example.bankcards.service.TransferStrategy;
+import com.example.bankcards.util.CardNumberHasher;
+import com.example.bankcards.util.CursorUtil;
 import com.example.bankcards.util.EncryptionUtil;
 import com.example.bankcards.util.MaskingUtil;
 import com.example.bankcards.util.ValidationUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
@@ -27,57 +48,175 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class CardServiceImpl implements CardService {
 
+    static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+    static final int MAX_PAGE_SIZE = 100;
+
     final CardRepository cardRepository;
     final UserRepository userRepository;
     final CardMapper cardMapper;
     final CardRequestMapper cardRequestMapper;
     final EncryptionUtil encryptionUtil;
+    final CursorUtil cursorUtil;
+    final CardNumberHasher cardNumberHasher;
     final MaskingUtil maskingUtil;
     final ValidationUtil validationUtil;
+    final CardTransferExecutor cardTransferExecutor;
+    final TransferIdempotencyService transferIdempotencyService;
+    final CardTransactionService cardTransactionService;
+    final CardStatsService cardStatsService;
+    final MeterRegistry meterRegistry;
+
+    // ATOMIC - минимум обращений к БД, PESSIMISTIC подходит для "горячих" карт,
+    // OPTIMISTIC - когда конфликты редки и блокировки только тормозят
+    @Value("${transfer.strategy:ATOMIC}")
+    TransferStrategy transferStrategy;
+
+    @Value("${transfer.batch.chunk-size:100}")
+    int batchChunkSize;
+
+    @Value("${transfer.optimistic.max-attempts:5}")
+    int optimisticMaxAttempts;
+
+    @Value("${transfer.optimistic.backoff-base-ms:10}")
+    long optimisticBackoffBaseMs;
+
+    @Value("${transfer.optimistic.backoff-max-ms:200}")
+    long optimisticBackoffMaxMs;
 
     @Override
     public Page<CardDTO> getUserCards(Long userId, Pageable pageable) {
         checkUserAccess(userId);
-        return cardRepository.findAllByUserId(userId, pageable)
+        return cardRepository.findViewsByUserId(userId, pageable)
                 .map(this::convertToDto);
     }
 
     @Override
-    @Transactional
+    public CursorPage<CardDTO> getUserCards(Long userId, String cursor, int size) {
+        checkUserAccess(userId);
+        validatePageSize(size);
+        return toCursorPage(cardRepository.findViewsByUserIdAfter(userId, decodeCardCursor(cursor), Limit.of(size + 1)),
+                size);
+    }
+
+    @Override
     public void transferBetweenOwnCards(Long userId, Long fromCardId, Long toCardId, BigDecimal amount) {
-        Card fromCard = cardRepository.findById(fromCardId)
-                .orElseThrow(() -> new NotFoundException("Карта отправителя не найдена с id: " + fromCardId));
+        transferBetweenOwnCards(userId, fromCardId, toCardId, amount, null);
+    }
+
+    @Override
+    public boolean transferBetweenOwnCards(Long userId, Long fromCardId, Long toCardId, BigDecimal amount,
+                                           String idempotencyKey) {
+        if (idempotencyKey != null) {
+            validateIdempotencyKey(idempotencyKey);
+
+            // Повтор уже выполненного перевода отвечаем сразу, не трогая строки карт
+            Optional<TransferIdempotency> previous = transferIdempotencyService.findCompleted(userId, idempotencyKey);
+            if (previous.isPresent()) {
+                return replay(previous.get(), fromCardId, toCardId, amount);
+            }
+        }
 
-        Card toCard = cardRepository.findById(toCardId)
-                .orElseThrow(() -> new NotFoundException("Карта получателя не найдена с id: " + toCardId));
+        // Сумму проверяем до обращения к БД, чтобы не держать строки карт ради заведомо неверного запроса
+        validationUtil.validateAmount(amount);
 
-        if (!fromCard.getUser().getId().equals(userId) ||
-                !toCard.getUser().getId().equals(userId)) {
-            throw new AccessDeniedException("Вы можете переводить только между своими картами");
+        try {
+            switch (transferStrategy) {
+                case ATOMIC -> cardTransferExecutor.transferAtomic(userId, fromCardId, toCardId, amount, idempotencyKey);
+                case OPTIMISTIC -> transferWithRetry(userId, fromCardId, toCardId, amount, idempotencyKey);
+                default -> cardTransferExecutor.transferWithLocks(userId, fromCardId, toCardId, amount, idempotencyKey);
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Параллельный запрос с тем же ключом успел закоммитить перевод раньше нас
+            if (idempotencyKey != null) {
+                Optional<TransferIdempotency> concurrent = transferIdempotencyService.findCompleted(userId, idempotencyKey);
+                if (concurrent.isPresent()) {
+                    return replay(concurrent.get(), fromCardId, toCardId, amount);
+                }
+            }
+            throw e;
         }
 
-        if (fromCard.getStatus() != CardStatus.ACTIVE || toCard.getStatus() != CardStatus.ACTIVE) {
-            throw new ValidationException("Обе карты должны быть активны для перевода");
+        meterRegistry.counter("cards.transfer.completed", "strategy", transferStrategy.name().toLowerCase()).increment();
+        return false;
+    }
+
+    @Override
+    public List<TransferResultDTO> transferBatch(Long userId, List<TransferRequest> transfers) {
+        // chunk-size = 0: весь пакет в одной транзакции, иначе каждая порция коммитится отдельно,
+        // чтобы большой пакет не держал блокировки карт слишком долго
+        int chunkSize = batchChunkSize > 0 ? batchChunkSize : transfers.size();
+
+        List<TransferResultDTO> results = new ArrayList<>(transfers.size());
+        for (int from = 0; from < transfers.size(); from += chunkSize) {
+            List<TransferRequest> chunk = transfers.subList(from, Math.min(from + chunkSize, transfers.size()));
+            results.addAll(cardTransferExecutor.transferBatch(userId, chunk, from));
         }
 
-        if (fromCard.getBalance().compareTo(amount) < 0) {
-            throw new ValidationException("Недостаточно средств на карте отправителя");
+        long completed = results.stream().filter(TransferResultDTO::isSuccess).count();
+        meterRegistry.counter("cards.transfer.completed", "strategy", "batch").increment(completed);
+
+        return results;
+    }
+
+    /**
+     * Оптимистичный перевод: каждая попытка - отдельная транзакция.
+     * При конфликте версий ждем случайную паузу (full jitter) и повторяем, но не больше maxAttempts раз
+     */
+    private void transferWithRetry(Long userId, Long fromCardId, Long toCardId, BigDecimal amount, String idempotencyKey) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                cardTransferExecutor.transferOptimistic(userId, fromCardId, toCardId, amount, idempotencyKey);
+                return;
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                meterRegistry.counter("cards.transfer.conflicts", "strategy", "optimistic").increment();
+
+                if (attempt >= optimisticMaxAttempts) {
+                    meterRegistry.counter("cards.transfer.retries.exhausted", "strategy", "optimistic").increment();
+                    throw new ConflictException("Карта изменена параллельной операцией, повторите перевод позже", e);
+                }
+
+                meterRegistry.counter("cards.transfer.retries", "strategy", "optimistic").increment();
+                backoff(attempt);
+            }
         }
+    }
 
-        validationUtil.validateAmount(amount);
+    private boolean replay(TransferIdempotency previous, Long fromCardId, Long toCardId, BigDecimal amount) {
+        // Один ключ - один перевод: повтор с другими параметрами - ошибка клиента, а не новый перевод
+        if (!previous.getFromCardId().equals(fromCardId) || !previous.getToCardId().equals(toCardId)
+                || previous.getAmount().compareTo(amount) != 0) {
+            throw new ConflictException("Ключ идемпотентности уже использован для другого перевода");
+        }
 
-        fromCard.setBalance(fromCard.getBalance().subtract(amount));
-        toCard.setBalance(toCard.getBalance().add(amount));
+        meterRegistry.counter("cards.transfer.idempotent.replays").increment();
+        return true;
+    }
 
-        cardRepository.save(fromCard);
-        cardRepository.save(toCard);
+    private void validateIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new ValidationException(String.format(
+                    "Ключ идемпотентности должен быть непустым и не длиннее %d символов", MAX_IDEMPOTENCY_KEY_LENGTH));
+        }
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(optimisticBackoffMaxMs, optimisticBackoffBaseMs << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Перевод прерван во время ожидания повторной попытки", e);
+        }
     }
 
     @Override
@@ -106,11 +245,32 @@ public class CardServiceImpl implements CardService {
 
         checkAdminAccess();
 
-        return cardRepository.findAll(pageable)
+        return cardRepository.findAllViews(pageable)
                 .map(this::convertToDto);
 
     }
 
+    @Override
+    public CursorPage<CardDTO> getAllCards(String cursor, int size) {
+
+        checkAdminAccess();
+        validatePageSize(size);
+
+        return toCursorPage(cardRepository.findViewsAfter(decodeCardCursor(cursor), Limit.of(size + 1)), size);
+
+    }
+
+    @Override
+    public CursorPage<CardDTO> searchCards(CardSearchCriteria criteria, String cursor, int size) {
+
+        checkAdminAccess();
+        validatePageSize(size);
+        validateSearchCriteria(criteria);
+
+        return toCursorPage(cardRepository.searchViews(criteria, decodeCardCursor(cursor), size + 1), size);
+
+    }
+
     @Override
     @Transactional
     public CardDTO createCard(CardRequestDTO cardRequestDTO) {
@@ -126,14 +286,27 @@ public class CardServiceImpl implements CardService {
         // Проверка срока действия карты
         validationUtil.validateExpirationDate(cardRequestDTO.getExpirationDate());
 
+        // Дубликат ищется одним запросом по уникальному индексу number_hash, а не дешифровкой всех карт.
+        // Параллельное создание той же карты отсечет сам уникальный индекс
+        String numberHash = cardNumberHasher.hash(cardRequestDTO.getNumber());
+        if (cardRepository.existsByNumberHash(numberHash)) {
+            throw new ConflictException("Карта с таким номером уже существует");
+        }
+
         Card card = cardRequestMapper.toEntity(cardRequestDTO);
 
-        card.setEncryptedNumber(encryptionUtil.encrypt(cardRequestDTO.getNumber()));
+        String encryptedNumber = encryptionUtil.encrypt(cardRequestDTO.getNumber());
+        card.setEncryptedNumber(encryptedNumber);
+        card.setKeyVersion(encryptionUtil.keyVersionOf(encryptedNumber));
+        card.setNumberHash(numberHash);
+        card.setLastFour(maskingUtil.extractLastFour(cardRequestDTO.getNumber()));
         card.setStatus(CardStatus.ACTIVE);
         card.setBalance(BigDecimal.ZERO);
         card.setUser(user);
 
         Card savedCard = cardRepository.save(card);
+        cardTransactionService.recordCardCreated(savedCard);
+        cardStatsService.recordCardAdded(user.getId(), savedCard.getStatus(), savedCard.getBalance());
         return convertToDto(savedCard);
     }
 
@@ -142,8 +315,7 @@ public class CardServiceImpl implements CardService {
     public CardDTO blockCard(Long cardId) {
         checkAdminAccess();
 
-        Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new NotFoundException("Карта не найдена с id: " + cardId));
+        Card card = lockCard(cardId);
 
         if (card.getStatus() == CardStatus.BLOCKED) {
             throw new ValidationException("Карта уже заблокирована");
@@ -153,8 +325,11 @@ public class CardServiceImpl implements CardService {
             throw new ValidationException("Нельзя заблокировать просроченную карту");
         }
 
+        CardStatus previousStatus = card.getStatus();
         card.setStatus(CardStatus.BLOCKED);
         Card updatedCard = cardRepository.save(card);
+        cardTransactionService.recordStatusChange(updatedCard);
+        cardStatsService.recordStatusChange(updatedCard.getUser().getId(), previousStatus, CardStatus.BLOCKED, updatedCard.getBalance());
         return convertToDto(updatedCard);
     }
 
@@ -163,8 +338,7 @@ public class CardServiceImpl implements CardService {
     public CardDTO activateCard(Long cardId) {
         checkAdminAccess();
 
-        Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new RuntimeException("Card not found"));
+        Card card = lockCard(cardId);
 
         if (card.getStatus() != CardStatus.BLOCKED) {
             throw new ValidationException("Можно активировать только заблокированные карты");
@@ -172,6 +346,8 @@ public class CardServiceImpl implements CardService {
 
         card.setStatus(CardStatus.ACTIVE);
         Card updatedCard = cardRepository.save(card);
+        cardTransactionService.recordStatusChange(updatedCard);
+        cardStatsService.recordStatusChange(updatedCard.getUser().getId(), CardStatus.BLOCKED, CardStatus.ACTIVE, updatedCard.getBalance());
         return convertToDto(updatedCard);
     }
 
@@ -180,11 +356,69 @@ public class CardServiceImpl implements CardService {
     public void deleteCard(Long cardId) {
         checkAdminAccess();
 
-        if (!cardRepository.existsById(cardId)) {
-            throw new NotFoundException("Карта не найдена с id: " + cardId);
+        Card card = lockCard(cardId);
+
+        cardStatsService.recordCardRemoved(card.getUser().getId(), card.getStatus(), card.getBalance());
+        cardRepository.delete(card);
+    }
+
+    // Карта блокируется до изменения сводки: порядок блокировок всегда "карта, затем строки сводки", как у переводов,
+    // поэтому встречные транзакции не попадают в deadlock. Параллельный перевод ждет блокировку строки,
+    // а не меняет баланс и версию после чтения (иначе - OptimisticLockException при записи)
+    private Card lockCard(Long cardId) {
+        return cardRepository.findAllByIdInForUpdate(List.of(cardId)).stream()
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException("Карта не найдена с id: " + cardId));
+    }
+
+    @Override
+    public CursorPage<CardTransactionDTO> getCardTransactions(Long cardId, String cursor, int size) {
+        Card card = cardRepository.findById(cardId)
+                .orElseThrow(() -> new NotFoundException("Карта не найдена с id: " + cardId));
+
+        checkCardAccess(card);
+        return cardTransactionService.getCardTransactions(cardId, cursor, size);
+    }
+
+    private void validatePageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ValidationException(String.format("Размер страницы должен быть от 1 до %d", MAX_PAGE_SIZE));
         }
+    }
 
-        cardRepository.deleteById(cardId);
+    private void validateSearchCriteria(CardSearchCriteria criteria) {
+        if (criteria.getExpiresFrom() != null && criteria.getExpiresTo() != null
+                && criteria.getExpiresFrom().isAfter(criteria.getExpiresTo())) {
+            throw new ValidationException("expiresFrom не может быть позже expiresTo");
+        }
+        if (criteria.getMinBalance() != null && criteria.getMaxBalance() != null
+                && criteria.getMinBalance().compareTo(criteria.getMaxBalance()) > 0) {
+            throw new ValidationException("minBalance не может быть больше maxBalance");
+        }
+    }
+
+    // Курсор карт - id последней карты предыдущей страницы. Без курсора - первая страница
+    private long decodeCardCursor(String cursor) {
+        if (cursor == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(cursorUtil.decode(cursor, 1)[0]);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректный курсор", e);
+        }
+    }
+
+    // Запрошено на одну карту больше размера страницы: лишняя строка означает, что следующая страница есть
+    private CursorPage<CardDTO> toCursorPage(List<CardView> rows, int size) {
+        boolean hasNext = rows.size() > size;
+        List<CardView> page = hasNext ? rows.subList(0, size) : rows;
+
+        return CursorPage.<CardDTO>builder()
+                .items(page.stream().map(this::convertToDto).toList())
+                .nextCursor(hasNext ? cursorUtil.encode(page.get(page.size() - 1).id()) : null)
+                .hasNext(hasNext)
+                .build();
     }
 
     /**
@@ -193,13 +427,35 @@ public class CardServiceImpl implements CardService {
     private CardDTO convertToDto(Card card) {
         CardDTO dto = cardMapper.toCardDTO(card);
 
-        // Ручная обработка номера карты: дешифровка + маскирование
-        String decryptedNumber = encryptionUtil.decrypt(card.getEncryptedNumber());
-        dto.setCardNumber(maskingUtil.maskCardNumber(decryptedNumber));
+        // Маска строится по сохраненным последним 4 цифрам. Дешифровка нужна только для строк,
+        // которые CardNumberBackfillJob еще не успел заполнить
+        if (card.getLastFour() != null) {
+            dto.setCardNumber(maskingUtil.maskLastFour(card.getLastFour()));
+        } else {
+            String decryptedNumber = encryptionUtil.decrypt(card.getEncryptedNumber());
+            dto.setCardNumber(maskingUtil.maskCardNumber(decryptedNumber));
+        }
 
         return dto;
     }
 
+    // То же для проекции списков: DTO собирается напрямую, без MapStruct и сущности
+    private CardDTO convertToDto(CardView card) {
+        String cardNumber = card.lastFour() != null
+                ? maskingUtil.maskLastFour(card.lastFour())
+                : maskingUtil.maskCardNumber(encryptionUtil.decrypt(card.encryptedNumber()));
+
+        return CardDTO.builder()
+                .id(card.id())
+                .cardNumber(cardNumber)
+                .owner(card.owner())
+                .expirationDate(card.expirationDate())
+                .status(card.status())
+                .balance(card.balance())
+                .userId(card.userId())
+                .build();
+    }
+
     private void checkCardAccess(Card card) {
         Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 
@@ -213,11 +469,7 @@ public class CardServiceImpl implements CardService {
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
 
         if (!isAdmin) {
-            String currentUsername = userDetails.getUsername();
-            User currentUser = userRepository.findByUsername(currentUsername)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            if (!card.getUser().getId().equals(currentUser.getId())) {
+            if (!card.getUser().getId().equals(currentUserId(userDetails))) {
                 throw new AccessDeniedException("Access denied");
             }
         }
@@ -241,16 +493,22 @@ public class CardServiceImpl implements CardService {
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
 
         if (!isAdmin) {
-            String currentUsername = userDetails.getUsername();
-            User currentUser = userRepository.findByUsername(currentUsername)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            if (!userId.equals(currentUser.getId())) {
+            if (!userId.equals(currentUserId(userDetails))) {
                 throw new AccessDeniedException("Access denied");
             }
         }
     }
 
+    // id текущего пользователя: из claims JWT без запроса к БД, для прочих способов входа - по имени
+    private Long currentUserId(UserDetails userDetails) {
+        if (userDetails instanceof JwtUserPrincipal principal) {
+            return principal.getId();
+        }
+        return userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"))
+                .getId();
+    }
+
     /**
      * Проверяет, является ли пользователь администратором
      */
@@ -0,0 +1,194 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardStatsDTO;
+import com.example.bankcards.dto.CardStatusStatsDTO;
+import com.example.bankcards.dto.UserCardStatsDTO;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardStatsService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Сводка по картам в card_status_stats (строка на статус и шард) и user_card_stats (строка на пользователя).
+ * Изменения применяются как приращения через INSERT ... ON CONFLICT DO UPDATE в транзакции вызывающего метода,
+ * поэтому откат операции откатывает и сводку. Приращение по статусу попадает в шард user_id % cards.stats.shards:
+ * изменения карт разных пользователей не ждут блокировку одной строки статуса. Чтобы встречные транзакции
+ * не попадали в deadlock, строки всегда блокируются в одном порядке: сначала статусы (по порядку CardStatus,
+ * он же алфавитный, затем по шарду), затем пользователи по возрастанию id.
+ * Расхождения, если они все же появятся, исправляет CardStatsRecomputeJob
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardStatsServiceImpl implements CardStatsService {
+
+    static final String UPSERT_STATUS_SQL = "INSERT INTO card_status_stats (status, shard, card_count, total_balance, updated_at) " +
+            "VALUES (?, ?, ?, ?, now()) ON CONFLICT (status, shard) DO UPDATE SET " +
+            "card_count = card_status_stats.card_count + EXCLUDED.card_count, " +
+            "total_balance = card_status_stats.total_balance + EXCLUDED.total_balance, updated_at = EXCLUDED.updated_at";
+
+    static final String UPSERT_USER_SQL = "INSERT INTO user_card_stats (user_id, card_count, total_balance, updated_at) " +
+            "VALUES (?, ?, ?, now()) ON CONFLICT (user_id) DO UPDATE SET " +
+            "card_count = user_card_stats.card_count + EXCLUDED.card_count, " +
+            "total_balance = user_card_stats.total_balance + EXCLUDED.total_balance, updated_at = EXCLUDED.updated_at";
+
+    // Вычитает из сводки по статусам все карты пользователя одним запросом (индекс idx_cards_user_id_status)
+    static final String SUBTRACT_USER_CARDS_SQL = "INSERT INTO card_status_stats (status, shard, card_count, total_balance, updated_at) " +
+            "SELECT status, ?, -count(*), -coalesce(sum(balance), 0), now() FROM cards WHERE user_id = ? " +
+            "GROUP BY status ORDER BY status ON CONFLICT (status, shard) DO UPDATE SET " +
+            "card_count = card_status_stats.card_count + EXCLUDED.card_count, " +
+            "total_balance = card_status_stats.total_balance + EXCLUDED.total_balance, updated_at = EXCLUDED.updated_at";
+
+    final JdbcTemplate jdbcTemplate;
+    final UserRepository userRepository;
+
+    @Value("${cards.stats.shards:16}")
+    int shards;
+
+    // Тот же шард считает CardStatsRecomputeJob (user_id % shards), id положительные
+    private int shardOf(Long userId) {
+        return (int) Math.floorMod(userId, (long) shards);
+    }
+
+    private void checkAdminAccess() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            throw new AccessDeniedException("Access denied");
+        }
+
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
+
+        if (!isAdmin) {
+            throw new AccessDeniedException("Admin access required");
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CardStatsDTO getStats() {
+
+        checkAdminAccess();
+
+        // Строк не больше, чем статусов карт, умноженных на число шардов, - время ответа не зависит от количества карт
+        Map<CardStatus, CardStatusStatsDTO> byStatus = new EnumMap<>(CardStatus.class);
+        for (CardStatus status : CardStatus.values()) {
+            byStatus.put(status, new CardStatusStatsDTO(status, 0, BigDecimal.ZERO));
+        }
+        jdbcTemplate.query("SELECT status, sum(card_count) AS card_count, sum(total_balance) AS total_balance " +
+                "FROM card_status_stats GROUP BY status", rs -> {
+            CardStatus status = CardStatus.valueOf(rs.getString("status"));
+            byStatus.put(status, new CardStatusStatsDTO(status, rs.getLong("card_count"), rs.getBigDecimal("total_balance")));
+        });
+
+        long totalCards = 0;
+        BigDecimal totalBalance = BigDecimal.ZERO;
+        for (CardStatusStatsDTO stats : byStatus.values()) {
+            totalCards += stats.getCardCount();
+            totalBalance = totalBalance.add(stats.getTotalBalance());
+        }
+
+        return CardStatsDTO.builder()
+                .byStatus(new ArrayList<>(byStatus.values()))
+                .totalCards(totalCards)
+                .totalBalance(totalBalance)
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserCardStatsDTO getUserStats(Long userId) {
+
+        checkAdminAccess();
+
+        List<UserCardStatsDTO> stats = jdbcTemplate.query(
+                "SELECT card_count, total_balance FROM user_card_stats WHERE user_id = ?",
+                (rs, rowNum) -> new UserCardStatsDTO(userId, rs.getLong("card_count"), rs.getBigDecimal("total_balance")),
+                userId);
+        if (!stats.isEmpty()) {
+            return stats.get(0);
+        }
+
+        // Строки нет у пользователя, у которого еще не было карт
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException("Пользователь не найден с id: " + userId);
+        }
+        return new UserCardStatsDTO(userId, 0, BigDecimal.ZERO);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCardAdded(Long userId, CardStatus status, BigDecimal balance) {
+        jdbcTemplate.update(UPSERT_STATUS_SQL, status.name(), shardOf(userId), 1, balance);
+        jdbcTemplate.update(UPSERT_USER_SQL, userId, 1, balance);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCardsImported(Map<Long, Long> cardsByUserId) {
+        // Строки ACTIVE блокируются по возрастанию шарда
+        Map<Integer, Long> cardsByShard = new TreeMap<>();
+        cardsByUserId.forEach((userId, count) -> cardsByShard.merge(shardOf(userId), count, Long::sum));
+        cardsByShard.values().removeIf(count -> count == 0);
+        if (cardsByShard.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> statuses = new ArrayList<>(cardsByShard.size());
+        cardsByShard.forEach((shard, count) -> statuses.add(new Object[]{CardStatus.ACTIVE.name(), shard, count, BigDecimal.ZERO}));
+        jdbcTemplate.batchUpdate(UPSERT_STATUS_SQL, statuses);
+
+        List<Object[]> users = new ArrayList<>(cardsByUserId.size());
+        new TreeMap<>(cardsByUserId).forEach((userId, count) -> users.add(new Object[]{userId, count, BigDecimal.ZERO}));
+        jdbcTemplate.batchUpdate(UPSERT_USER_SQL, users);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCardRemoved(Long userId, CardStatus status, BigDecimal balance) {
+        jdbcTemplate.update(UPSERT_STATUS_SQL, status.name(), shardOf(userId), -1, balance.negate());
+        jdbcTemplate.update(UPSERT_USER_SQL, userId, -1, balance.negate());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordStatusChange(Long userId, CardStatus from, CardStatus to, BigDecimal balance) {
+        if (from == to) {
+            return;
+        }
+        // Итоги пользователя от статуса не зависят, меняются только две строки статусов в шарде пользователя
+        int shard = shardOf(userId);
+        if (from.compareTo(to) < 0) {
+            jdbcTemplate.update(UPSERT_STATUS_SQL, from.name(), shard, -1, balance.negate());
+            jdbcTemplate.update(UPSERT_STATUS_SQL, to.name(), shard, 1, balance);
+        } else {
+            jdbcTemplate.update(UPSERT_STATUS_SQL, to.name(), shard, 1, balance);
+            jdbcTemplate.update(UPSERT_STATUS_SQL, from.name(), shard, -1, balance.negate());
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordUserCardsRemoved(Long userId) {
+        jdbcTemplate.update(SUBTRACT_USER_CARDS_SQL, shardOf(userId), userId);
+        jdbcTemplate.update("DELETE FROM user_card_stats WHERE user_id = ?", userId);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardTransactionDTO;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.CardTransaction;
+import com.example.bankcards.entity.CardTransactionType;
+import com.example.bankcards.exception.ValidationException;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.service.CardTransactionService;
+import com.example.bankcards.util.CursorUtil;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardTransactionServiceImpl implements CardTransactionService {
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    final CardTransactionRepository cardTransactionRepository;
+    final CursorUtil cursorUtil;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfer(Long userId, Long fromCardId, Long toCardId, BigDecimal amount) {
+        LocalDateTime now = now();
+        cardTransactionRepository.saveAll(List.of(
+                entry(fromCardId, userId, CardTransactionType.TRANSFER_DEBIT, amount, toCardId, null, now),
+                entry(toCardId, userId, CardTransactionType.TRANSFER_CREDIT, amount, fromCardId, null, now)
+        ));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCardCreated(Card card) {
+        cardTransactionRepository.save(entry(card.getId(), card.getUser().getId(), CardTransactionType.CARD_CREATED,
+                card.getBalance(), null, card.getStatus(), now()));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordStatusChange(Card card) {
+        cardTransactionRepository.save(entry(card.getId(), card.getUser().getId(), CardTransactionType.STATUS_CHANGED,
+                null, null, card.getStatus(), now()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<CardTransactionDTO> getCardTransactions(Long cardId, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ValidationException(String.format("Размер страницы должен быть от 1 до %d", MAX_PAGE_SIZE));
+        }
+
+        // Запрашиваем на одну запись больше, чтобы без count(*) понять, есть ли следующая страница
+        Limit limit = Limit.of(size + 1);
+        List<CardTransaction> rows;
+        if (cursor == null) {
+            rows = cardTransactionRepository.findByCardIdOrderByCreatedAtDescIdDesc(cardId, limit);
+        } else {
+            String[] position = cursorUtil.decode(cursor, 2);
+            rows = cardTransactionRepository.findPageBefore(cardId, parseCreatedAt(position[0]), parseId(position[1]), limit);
+        }
+
+        boolean hasNext = rows.size() > size;
+        List<CardTransaction> page = hasNext ? rows.subList(0, size) : rows;
+
+        String nextCursor = null;
+        if (hasNext) {
+            CardTransaction last = page.get(page.size() - 1);
+            nextCursor = cursorUtil.encode(last.getCreatedAt(), last.getId());
+        }
+
+        return CursorPage.<CardTransactionDTO>builder()
+                .items(page.stream().map(this::convertToDto).toList())
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    private CardTransaction entry(Long cardId, Long userId, CardTransactionType type, BigDecimal amount,
+                                  Long counterpartyCardId, CardStatus status,
+                                  LocalDateTime createdAt) {
+        CardTransaction transaction = new CardTransaction();
+        transaction.setCardId(cardId);
+        transaction.setUserId(userId);
+        transaction.setType(type);
+        transaction.setAmount(amount);
+        transaction.setCounterpartyCardId(counterpartyCardId);
+        transaction.setStatus(status);
+        transaction.setCreatedAt(createdAt);
+        return transaction;
+    }
+
+    private CardTransactionDTO convertToDto(CardTransaction transaction) {
+        return CardTransactionDTO.builder()
+                .id(transaction.getId())
+                .cardId(transaction.getCardId())
+                .type(transaction.getType())
+                .amount(transaction.getAmount())
+                .counterpartyCardId(transaction.getCounterpartyCardId())
+                .status(transaction.getStatus())
+                .createdAt(transaction.getCreatedAt())
+                .build();
+    }
+
+    // PostgreSQL хранит timestamp с точностью до микросекунд - обрезаем заранее, чтобы курсор совпадал с БД
+    private LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private LocalDateTime parseCreatedAt(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("Некорректный курсор", e);
+        }
+    }
+
+    private Long parseId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректный курсор", e);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResultDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.ConflictException;
+import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.exception.ValidationException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.CardTransactionService;
+import com.example.bankcards.service.TransferIdempotencyService;
+import com.example.bankcards.util.ValidationUtil;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Выполняет одну попытку перевода (или один пакет переводов) в отдельной транзакции.
+// Вынесено из CardServiceImpl, чтобы повтор при оптимистичном конфликте начинал новую транзакцию через прокси.
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardTransferExecutor {
+
+    final CardRepository cardRepository;
+    final ValidationUtil validationUtil;
+    final TransferIdempotencyService transferIdempotencyService;
+    final CardTransactionService cardTransactionService;
+
+    @Transactional
+    public void transferWithLocks(Long userId, Long fromCardId, Long toCardId, BigDecimal amount, String idempotencyKey) {
+        registerIdempotencyKey(userId, idempotencyKey, fromCardId, toCardId, amount);
+
+        // Обе строки блокируются одним запросом в порядке возрастания id (SELECT ... FOR UPDATE),
+        // чтобы параллельные переводы не затирали баланс друг друга и не блокировали друг друга взаимно
+        List<Card> cards = cardRepository.findAllByIdInForUpdate(List.of(fromCardId, toCardId));
+        applyTransfer(cards, userId, fromCardId, toCardId, amount);
+    }
+
+    @Transactional
+    public void transferOptimistic(Long userId, Long fromCardId, Long toCardId, BigDecimal amount, String idempotencyKey) {
+        registerIdempotencyKey(userId, idempotencyKey, fromCardId, toCardId, amount);
+
+        // Блокировок нет: при коммите Hibernate добавит "WHERE version = ?" и бросит
+        // OptimisticLockException, если кто-то успел изменить карту после чтения
+        List<Card> cards = cardRepository.findAllById(List.of(fromCardId, toCardId));
+        applyTransfer(cards, userId, fromCardId, toCardId, amount);
+    }
+
+    @Transactional
+    public void transferAtomic(Long userId, Long fromCardId, Long toCardId, BigDecimal amount, String idempotencyKey) {
+        registerIdempotencyKey(userId, idempotencyKey, fromCardId, toCardId, amount);
+
+        // Два UPDATE вместо двух SELECT + гидратации + двух UPDATE. Строки обновляются в порядке
+        // возрастания id - как и в пессимистичном режиме, встречные переводы не попадут в deadlock
+        boolean debited;
+        boolean credited;
+        if (fromCardId <= toCardId) {
+            debited = cardRepository.debitIfActiveAndSufficient(fromCardId, userId, amount) == 1;
+            credited = debited && cardRepository.creditIfActive(toCardId, userId, amount) == 1;
+        } else {
+            credited = cardRepository.creditIfActive(toCardId, userId, amount) == 1;
+            debited = credited && cardRepository.debitIfActiveAndSufficient(fromCardId, userId, amount) == 1;
+        }
+
+        if (!debited || !credited) {
+            // Путь ошибки редкий, поэтому только здесь читаем карты, чтобы вернуть ту же ошибку,
+            // что и остальные стратегии. Исключение откатывает уже выполненный UPDATE
+            List<Card> cards = cardRepository.findAllById(List.of(fromCardId, toCardId));
+            validateTransfer(indexById(cards), userId, fromCardId, toCardId, amount);
+            throw new ConflictException("Карта изменена параллельной операцией, повторите перевод");
+        }
+
+        cardTransactionService.recordTransfer(userId, fromCardId, toCardId, amount);
+    }
+
+    /**
+     * Пакет переводов в одной транзакции: все карты пакета блокируются одним SELECT ... FOR UPDATE
+     * (в порядке возрастания id), переводы применяются в памяти по очереди, а UPDATE уходят при коммите
+     * JDBC-пакетами (hibernate.jdbc.batch_size + order_updates). Ошибка одного перевода не откатывает
+     * остальные: проверки выполняются до изменения балансов, поэтому неудачный перевод просто пропускается
+     */
+    @Transactional
+    public List<TransferResultDTO> transferBatch(Long userId, List<TransferRequest> transfers, int firstIndex) {
+        Set<Long> cardIds = new TreeSet<>();
+        for (TransferRequest transfer : transfers) {
+            cardIds.add(transfer.getFromCardId());
+            cardIds.add(transfer.getToCardId());
+        }
+
+        Map<Long, Card> cardsById = indexById(cardRepository.findAllByIdInForUpdate(cardIds));
+
+        List<TransferResultDTO> results = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRequest transfer = transfers.get(i);
+            TransferResultDTO.TransferResultDTOBuilder result = TransferResultDTO.builder()
+                    .index(firstIndex + i)
+                    .fromCardId(transfer.getFromCardId())
+                    .toCardId(transfer.getToCardId())
+                    .amount(transfer.getAmount());
+
+            try {
+                validationUtil.validateAmount(transfer.getAmount());
+                validateTransfer(cardsById, userId, transfer.getFromCardId(), transfer.getToCardId(), transfer.getAmount());
+
+                Card fromCard = cardsById.get(transfer.getFromCardId());
+                Card toCard = cardsById.get(transfer.getToCardId());
+                fromCard.setBalance(fromCard.getBalance().subtract(transfer.getAmount()));
+                toCard.setBalance(toCard.getBalance().add(transfer.getAmount()));
+
+                cardTransactionService.recordTransfer(userId, transfer.getFromCardId(), transfer.getToCardId(),
+                        transfer.getAmount());
+                results.add(result.success(true).build());
+            } catch (NotFoundException | ValidationException | AccessDeniedException e) {
+                results.add(result.success(false).error(e.getMessage()).build());
+            }
+        }
+
+        return results;
+    }
+
+    private void registerIdempotencyKey(Long userId, String idempotencyKey, Long fromCardId, Long toCardId, BigDecimal amount) {
+        // Ключ фиксируется в той же транзакции, что и перевод: либо сохраняются оба, либо ни один
+        if (idempotencyKey != null) {
+            transferIdempotencyService.register(userId, idempotencyKey, fromCardId, toCardId, amount);
+        }
+    }
+
+    private void applyTransfer(List<Card> cards, Long userId, Long fromCardId, Long toCardId, BigDecimal amount) {
+        Map<Long, Card> cardsById = indexById(cards);
+        validateTransfer(cardsById, userId, fromCardId, toCardId, amount);
+
+        Card fromCard = cardsById.get(fromCardId);
+        Card toCard = cardsById.get(toCardId);
+
+        fromCard.setBalance(fromCard.getBalance().subtract(amount));
+        toCard.setBalance(toCard.getBalance().add(amount));
+
+        cardRepository.save(fromCard);
+        cardRepository.save(toCard);
+
+        cardTransactionService.recordTransfer(userId, fromCardId, toCardId, amount);
+    }
+
+    private Map<Long, Card> indexById(List<Card> cards) {
+        return cards.stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+    }
+
+    private void validateTransfer(Map<Long, Card> cardsById, Long userId, Long fromCardId, Long toCardId, BigDecimal amount) {
+        Card fromCard = cardsById.get(fromCardId);
+        if (fromCard == null) {
+            throw new NotFoundException("Карта отправителя не найдена с id: " + fromCardId);
+        }
+
+        Card toCard = cardsById.get(toCardId);
+        if (toCard == null) {
+            throw new NotFoundException("Карта получателя не найдена с id: " + toCardId);
+        }
+
+        if (!fromCard.getUser().getId().equals(userId) ||
+                !toCard.getUser().getId().equals(userId)) {
+            throw new AccessDeniedException("Вы можете переводить только между своими картами");
+        }
+
+        if (fromCard.getStatus() != CardStatus.ACTIVE || toCard.getStatus() != CardStatus.ACTIVE) {
+            throw new ValidationException("Обе карты должны быть активны для перевода");
+        }
+
+        if (fromCard.getBalance().compareTo(amount) < 0) {
+            throw new ValidationException("Недостаточно средств на карте отправителя");
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.TransferIdempotency;
+import com.example.bankcards.repository.TransferIdempotencyRepository;
+import com.example.bankcards.service.TransferIdempotencyService;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TransferIdempotencyServiceImpl implements TransferIdempotencyService {
+
+    final TransferIdempotencyRepository transferIdempotencyRepository;
+
+    @Value("${transfer.idempotency.ttl:PT24H}")
+    Duration ttl;
+
+    @Value("${transfer.idempotency.cache-size:10000}")
+    int cacheSize;
+
+    // LRU-кэш последних выполненных переводов: повтор через несколько секунд отвечается из памяти,
+    // без запроса к таблице и тем более к строкам карт
+    Map<String, TransferIdempotency> recentTransfers;
+
+    @PostConstruct
+    void initCache() {
+        recentTransfers = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TransferIdempotency> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<TransferIdempotency> findCompleted(Long userId, String idempotencyKey) {
+        String cacheKey = cacheKey(userId, idempotencyKey);
+        LocalDateTime now = LocalDateTime.now();
+
+        TransferIdempotency cached = recentTransfers.get(cacheKey);
+        if (cached != null) {
+            if (cached.getExpiresAt().isAfter(now)) {
+                return Optional.of(cached);
+            }
+            recentTransfers.remove(cacheKey);
+        }
+
+        Optional<TransferIdempotency> stored = transferIdempotencyRepository
+                .findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                .filter(record -> record.getExpiresAt().isAfter(now));
+        stored.ifPresent(record -> recentTransfers.put(cacheKey, record));
+        return stored;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void register(Long userId, String idempotencyKey, Long fromCardId, Long toCardId, BigDecimal amount) {
+        LocalDateTime now = LocalDateTime.now();
+
+        // findCompleted истекшую запись не видит, поэтому ключ считается свободным: старая запись удаляется
+        transferIdempotencyRepository.deleteExpiredKey(userId, idempotencyKey, now);
+
+        TransferIdempotency record = new TransferIdempotency();
+        record.setUserId(userId);
+        record.setIdempotencyKey(idempotencyKey);
+        record.setFromCardId(fromCardId);
+        record.setToCardId(toCardId);
+        record.setAmount(amount);
+        record.setCreatedAt(now);
+        record.setExpiresAt(now.plus(ttl));
+
+        // Вставка идет до изменения балансов: параллельный запрос с тем же ключом ждет на уникальном индексе
+        // и после коммита первого получает DataIntegrityViolationException вместо второго перевода
+        transferIdempotencyRepository.saveAndFlush(record);
+
+        // В кэш попадают только закоммиченные переводы
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentTransfers.put(cacheKey(userId, idempotencyKey), record);
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public int purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (recentTransfers) { // Обход synchronizedMap требует ручной синхронизации
+            recentTransfers.values().removeIf(record -> !record.getExpiresAt().isAfter(now));
+        }
+        return transferIdempotencyRepository.deleteExpired(now);
+    }
+
+    private String cacheKey(Long userId, String idempotencyKey) {
+        return userId + ":" + idempotencyKey;
+    }
+}
@@ -23,6 +23,7 @@ public class UserDetailsServiceImpl implements UserDetailsService {
                 .username(user.getUsername())
                 .password(user.getPassword())
                 .roles(user.getRole().name())
+                .disabled(!Boolean.TRUE.equals(user.getEnabled())) // Заблокированный пользователь не проходит JwtFilter
                 .build();
     }
 }
@@ -1,5 +1,6 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.UserCreateDTO;
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.dto.UserUpdateDTO;
@@ -9,11 +10,19 @@ import com.example.bankcards.exception.NotFoundException;
 import com.example.bankcards.exception.ValidationException;
 import com.example.bankcards.mapper.UserMapper;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.JwtUserPrincipal;
+import com.example.bankcards.security.UserDetailsCache;
+import com.example.bankcards.service.CardStatsService;
 import com.example.bankcards.service.UserService;
+import com.example.bankcards.util.CursorUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -22,6 +31,12 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.List;
 
 @Service
@@ -33,6 +48,16 @@ public class UserServiceImpl implements UserService {
     final UserRepository userRepository;
     final UserMapper userMapper;
     final PasswordEncoder passwordEncoder;
+    final UserDetailsCache userDetailsCache;
+    final CursorUtil cursorUtil;
+    final JdbcTemplate jdbcTemplate;
+    final ObjectMapper objectMapper;
+    final CardStatsService cardStatsService;
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    @Value("${users.export.fetch-size:500}")
+    int exportFetchSize;
 
     // Вспомогательный метод для проверки прав администратора
     private void checkAdminAccess() {
@@ -84,6 +109,72 @@ public class UserServiceImpl implements UserService {
         return userMapper.toUserDTOList(users);
     }
 
+    @Override
+    public CursorPage<UserDTO> getUsers(String cursor, int size) {
+
+        checkAdminAccess();
+
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ValidationException(String.format("Размер страницы должен быть от 1 до %d", MAX_PAGE_SIZE));
+        }
+
+        long afterId = 0L;
+        if (cursor != null) {
+            try {
+                afterId = Long.parseLong(cursorUtil.decode(cursor, 1)[0]);
+            } catch (NumberFormatException e) {
+                throw new ValidationException("Некорректный курсор", e);
+            }
+        }
+
+        // Запрашиваем на одного пользователя больше, чтобы без count(*) понять, есть ли следующая страница
+        List<User> rows = userRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(size + 1));
+        boolean hasNext = rows.size() > size;
+        List<User> page = hasNext ? rows.subList(0, size) : rows;
+
+        return CursorPage.<UserDTO>builder()
+                .items(userMapper.toUserDTOList(page))
+                .nextCursor(hasNext ? cursorUtil.encode(page.get(page.size() - 1).getId()) : null)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    /**
+     * Выгрузка всех пользователей в NDJSON. Строки читаются однонаправленным курсором JDBC порциями
+     * по users.export.fetch-size (курсор PostgreSQL работает внутри транзакции - она открыта на уровне класса)
+     * и сразу пишутся в ответ, поэтому расход памяти не зависит от размера таблицы
+     */
+    @Override
+    public void exportUsers(OutputStream out) throws IOException {
+
+        checkAdminAccess();
+
+        BufferedOutputStream buffered = new BufferedOutputStream(out);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT id, username, first_name, last_name, role FROM users ORDER BY id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(exportFetchSize);
+            return ps;
+        }, rs -> {
+            UserDTO user = UserDTO.builder()
+                    .id(rs.getLong("id"))
+                    .username(rs.getString("username"))
+                    .firstName(rs.getString("first_name"))
+                    .lastName(rs.getString("last_name"))
+                    .role(rs.getString("role"))
+                    .build();
+            try {
+                buffered.write(objectMapper.writeValueAsBytes(user));
+                buffered.write('\n');
+            } catch (IOException e) {
+                // Клиент закрыл соединение - прекращаем чтение курсора
+                throw new UncheckedIOException(e);
+            }
+        });
+        buffered.flush();
+    }
+
     @Override
     @Transactional
     public UserDTO createUser(UserCreateDTO userCreateDTO) {
@@ -128,6 +219,8 @@ public class UserServiceImpl implements UserService {
             }
 
             User savedUser = userRepository.save(user);
+            // Роль и статус попадают в UserDetails, поэтому закэшированная копия больше не актуальна
+            userDetailsCache.evictAfterCommit(savedUser.getUsername());
             return userMapper.toUserDTO(savedUser);
         } catch (DataAccessException e) {
             throw new ValidationException("Ошибка доступа к данным при обновлении пользователя", e);
@@ -140,11 +233,13 @@ public class UserServiceImpl implements UserService {
 
         checkAdminAccess();
 
-        if (!userRepository.existsById(id)) {
-            throw new UsernameNotFoundException("User not found with id: " + id);
-        }
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + id));
 
-        userRepository.deleteById(id);
+        // Карты удаляются каскадом вместе с пользователем - сводка уменьшается до удаления, пока они еще есть в cards
+        cardStatsService.recordUserCardsRemoved(id);
+        userRepository.delete(user);
+        userDetailsCache.evictAfterCommit(user.getUsername());
     }
 
     @Override
@@ -166,6 +261,10 @@ public class UserServiceImpl implements UserService {
     @Override
     public Long getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        // Запрос с JWT: id уже есть в проверенном токене
+        if (authentication.getPrincipal() instanceof JwtUserPrincipal principal) {
+            return principal.getId();
+        }
         String username = authentication.getName();
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
@@ -175,6 +274,9 @@ public class UserServiceImpl implements UserService {
     @Override
     public boolean isCurrentUserAdmin() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication.getPrincipal() instanceof JwtUserPrincipal principal) {
+            return principal.isAdmin();
+        }
         String username = authentication.getName();
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
@@ -0,0 +1,86 @@
+package com.example.bankcards.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Построчное чтение с ограничением длины строки. В отличие от BufferedReader.readLine, строка без перевода
+ * строки не накапливается в памяти целиком: сохраняются первые maxLength символов, остаток до конца строки
+ * пропускается, а isTruncated() сообщает, что строка была обрезана.
+ * Концом строки, как и у BufferedReader, считаются \n, \r и \r\n
+ */
+public final class BoundedLineReader {
+
+    private final Reader reader;
+    private final int maxLength;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private boolean skipLineFeed;
+    private boolean truncated;
+    private long lineNumber;
+
+    public BoundedLineReader(Reader reader, int maxLength) {
+        this.reader = reader;
+        this.maxLength = maxLength;
+    }
+
+    // Следующая строка без символов перевода строки или null в конце файла
+    public String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        truncated = false;
+        boolean started = false;
+
+        while (true) {
+            if (position >= limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (!started) {
+                        return null;
+                    }
+                    break;
+                }
+            }
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+            started = true;
+
+            int start = position;
+            while (position < limit && buffer[position] != '\n' && buffer[position] != '\r') {
+                position++;
+            }
+            int room = maxLength - line.length();
+            int length = position - start;
+            if (length > room) {
+                truncated = true;
+                length = room;
+            }
+            line.append(buffer, start, length);
+
+            if (position < limit) {
+                skipLineFeed = buffer[position] == '\r';
+                position++;
+                break;
+            }
+        }
+
+        lineNumber++;
+        return line.toString();
+    }
+
+    // Была ли последняя прочитанная строка длиннее maxLength
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.EncryptionException;
+import com.example.bankcards.exception.InvalidCardDataException;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+// Слепой индекс номера карты (HMAC-SHA256 с отдельным секретным ключом). Одинаковые номера дают одинаковый хэш,
+// поэтому по колонке cards.number_hash работают уникальный индекс и поиск карты без дешифровки всей таблицы.
+// Без ключа по хэшу нельзя перебрать номера карт, в отличие от обычного SHA-256
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CardNumberHasher {
+
+    static final String ALGORITHM = "HmacSHA256";
+    static final int MIN_KEY_LENGTH = 32;
+
+    @Value("${encryption.hash-key}")
+    String hashKey;
+
+    SecretKeySpec keySpec;
+
+    // Mac не потокобезопасен - как и Cipher в EncryptionUtil, у каждого потока свой экземпляр
+    final ThreadLocal<Mac> mac = ThreadLocal.withInitial(this::createMac);
+
+    @PostConstruct
+    void initKey() {
+        byte[] keyBytes = hashKey.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length < MIN_KEY_LENGTH) {
+            throw new EncryptionException("Длина ключа хэширования должна быть не меньше " + MIN_KEY_LENGTH + " байт. Получено: " + keyBytes.length);
+        }
+        keySpec = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    // Хэш считается по цифрам номера, поэтому "4111 1111 1111 1111" и "4111111111111111" совпадают
+    public String hash(String cardNumber) {
+        if (!StringUtils.hasText(cardNumber)) {
+            throw new InvalidCardDataException("Номер карты не может быть null или пустым");
+        }
+
+        byte[] digits = CardNumberKernel.asciiDigits(cardNumber, CardNumberKernel.digitCount(CardNumberKernel.scan(cardNumber)));
+        try {
+            // doFinal сбрасывает Mac, следующий вызов в этом потоке начинается с чистого состояния
+            return HexFormat.of().formatHex(mac.get().doFinal(digits));
+        } catch (RuntimeException e) {
+            mac.remove();
+            throw new EncryptionException("Ошибка при хэшировании номера карты", e);
+        }
+    }
+
+    private Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(keySpec);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new EncryptionException("Ошибка инициализации HMAC", e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.bankcards.util;
+
+/**
+ * Разбор номера карты за один проход по символам, без регулярных выражений и промежуточных строк.
+ * Результат упаковывается в long: количество цифр, признак корректной контрольной суммы (алгоритм Луна)
+ * и последние 4 цифры. Общий для MaskingUtil, ValidationUtil и CardNumberHasher.
+ * Цифрами считаются только ASCII '0'-'9' - как и у прежнего replaceAll("\\D", "")
+ */
+public final class CardNumberKernel {
+
+    public static final int MIN_CARD_LENGTH = 13;
+    public static final int MAX_CARD_LENGTH = 19;
+
+    static final char[] MASK_PREFIX = "**** **** **** ".toCharArray();
+
+    // Раскладка результата scan: биты 0-15 - последние 4 цифры (по 4 бита), 16-47 - количество цифр, 48 - Луна сошелся
+    static final int COUNT_SHIFT = 16;
+    static final long COUNT_MASK = 0xFFFF_FFFFL;
+    static final long LUHN_VALID_BIT = 1L << 48;
+
+    private CardNumberKernel() {
+    }
+
+    public static long scan(CharSequence cardNumber) {
+        int count = 0;
+        int lastFour = 0;
+        // Длина заранее неизвестна, поэтому суммы Луна считаются сразу для обоих вариантов четности:
+        // в конце выбирается та, где удваивалась каждая вторая цифра, считая от последней
+        int sumDoubledEven = 0;
+        int sumDoubledOdd = 0;
+
+        for (int i = 0, length = cardNumber.length(); i < length; i++) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                continue;
+            }
+
+            int doubled = digit * 2;
+            if (doubled > 9) {
+                doubled -= 9;
+            }
+            if ((count & 1) == 0) {
+                sumDoubledEven += doubled;
+                sumDoubledOdd += digit;
+            } else {
+                sumDoubledEven += digit;
+                sumDoubledOdd += doubled;
+            }
+
+            lastFour = ((lastFour << 4) | digit) & 0xFFFF;
+            count++;
+        }
+
+        // Последняя цифра (индекс count - 1) не удваивается, значит удваиваются индексы той же четности, что и count
+        int sum = (count & 1) == 0 ? sumDoubledEven : sumDoubledOdd;
+        long result = lastFour | ((count & COUNT_MASK) << COUNT_SHIFT);
+        return count > 0 && sum % 10 == 0 ? result | LUHN_VALID_BIT : result;
+    }
+
+    public static int digitCount(long scan) {
+        return (int) ((scan >>> COUNT_SHIFT) & COUNT_MASK);
+    }
+
+    public static boolean hasValidLength(long scan) {
+        int count = digitCount(scan);
+        return count >= MIN_CARD_LENGTH && count <= MAX_CARD_LENGTH;
+    }
+
+    public static boolean isLuhnValid(long scan) {
+        return (scan & LUHN_VALID_BIT) != 0;
+    }
+
+    public static String lastFour(long scan) {
+        char[] chars = new char[4];
+        writeLastFour(scan, chars, 0);
+        return new String(chars);
+    }
+
+    // "**** **** **** 1234" одним массивом, без конкатенации строк
+    public static String mask(long scan) {
+        char[] chars = new char[MASK_PREFIX.length + 4];
+        System.arraycopy(MASK_PREFIX, 0, chars, 0, MASK_PREFIX.length);
+        writeLastFour(scan, chars, MASK_PREFIX.length);
+        return new String(chars);
+    }
+
+    // Цифры номера в ASCII (например, для HMAC), digitCount берется из scan того же номера
+    public static byte[] asciiDigits(CharSequence cardNumber, int digitCount) {
+        byte[] digits = new byte[digitCount];
+        int position = 0;
+        for (int i = 0, length = cardNumber.length(); i < length && position < digitCount; i++) {
+            char c = cardNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits[position++] = (byte) c;
+            }
+        }
+        return digits;
+    }
+
+    private static void writeLastFour(long scan, char[] target, int offset) {
+        for (int i = 0; i < 4; i++) {
+            target[offset + i] = (char) ('0' + ((scan >>> (12 - 4 * i)) & 0xF));
+        }
+    }
+}
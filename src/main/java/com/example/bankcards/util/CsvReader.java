@@ -0,0 +1,123 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.ValidationException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковое чтение CSV по RFC 4180: поле в двойных кавычках может содержать запятые, переводы строк
+ * и удвоенные кавычки (""), поэтому одна запись может занимать несколько строк файла.
+ * Кавычка допустима только в начале поля, пробелы вокруг нее считаются частью поля.
+ * Запись не длиннее MAX_RECORD_LENGTH символов, в том числе запись с незакрытой кавычкой, чтобы одна ошибка
+ * в файле не затянула в память все остальное. Более длинная запись обрезается и помечается isRecordTooLong()
+ */
+public final class CsvReader {
+
+    public static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private final BoundedLineReader lines;
+    private long recordLine;
+    private boolean recordTooLong;
+
+    public CsvReader(Reader reader) {
+        this.lines = new BoundedLineReader(reader, MAX_RECORD_LENGTH);
+    }
+
+    // Следующая запись целиком (строки внутри кавычек склеены через \n) или null в конце файла
+    public String readRecord() throws IOException {
+        String line = lines.readLine();
+        if (line == null) {
+            return null;
+        }
+        recordLine = lines.getLineNumber();
+        recordTooLong = lines.isTruncated();
+
+        int quotes = countQuotes(line);
+        if (recordTooLong || quotes % 2 == 0) {
+            return line;
+        }
+
+        // Нечетное число кавычек - поле в кавычках продолжается на следующей строке
+        StringBuilder record = new StringBuilder(line);
+        while (quotes % 2 != 0) {
+            String next = lines.readLine();
+            if (next == null) {
+                break;
+            }
+            if (lines.isTruncated() || record.length() + 1 + next.length() > MAX_RECORD_LENGTH) {
+                recordTooLong = true;
+                break;
+            }
+            quotes += countQuotes(next);
+            record.append('\n').append(next);
+        }
+        return record.toString();
+    }
+
+    // Номер строки файла, с которой началась последняя прочитанная запись
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    // Последняя запись превысила MAX_RECORD_LENGTH и возвращена не целиком
+    public boolean isRecordTooLong() {
+        return recordTooLong;
+    }
+
+    public static List<String> parseRecord(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int length = record.length();
+        int i = 0;
+        while (true) {
+            if (i < length && record.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        throw new ValidationException("Незакрытая кавычка в записи CSV");
+                    }
+                    char c = record.charAt(i++);
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < length && record.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                if (i < length && record.charAt(i) != ',') {
+                    throw new ValidationException("После закрывающей кавычки ожидается запятая");
+                }
+            } else {
+                while (i < length && record.charAt(i) != ',') {
+                    char c = record.charAt(i++);
+                    if (c == '"') {
+                        throw new ValidationException("Кавычка внутри поля без кавычек");
+                    }
+                    field.append(c);
+                }
+            }
+
+            fields.add(field.toString());
+            field.setLength(0);
+            if (i >= length) {
+                return fields;
+            }
+            i++; // Запятая-разделитель
+        }
+    }
+
+    private static int countQuotes(String line) {
+        int count = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.ValidationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Кодирует позицию курсорной пагинации (последний ключ сортировки + id) в непрозрачную строку для клиента
+@Component
+public class CursorUtil {
+
+    static final String SEPARATOR = "|";
+
+    public String encode(Object... parts) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String[] decode(String cursor, int expectedParts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, -1);
+            if (parts.length != expectedParts) {
+                throw new ValidationException("Некорректный курсор");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный курсор", e);
+        }
+    }
+}
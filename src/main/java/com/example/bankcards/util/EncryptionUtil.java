@@ -1,52 +1,102 @@
 package com.example.bankcards.util;
 
 import com.example.bankcards.exception.EncryptionException;
+import jakarta.annotation.PostConstruct;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 
 // класс для шифрования и дешифрования данных с использованием алгоритма AES. Нужен для защиты конфиденциальной информации (Номера банковских карт).
+// Поддерживает несколько версий ключа (key ring): шифрует активным ключом, а дешифрует тем ключом, версия которого
+// записана в префиксе шифротекста ("v2:..."). Так ключ меняется без простоя - старые данные читаются, пока
+// CardReEncryptionJob переписывает их новым ключом
 @Component
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class EncryptionUtil {
 
-    // Секретный ключ для шифрования/дешифрования
+    // Шифротекст без префикса записан до появления версий ключа и относится к версии 1 (encryption.secret-key)
+    public static final int LEGACY_KEY_VERSION = 1;
+    static final String VERSION_PREFIX = "v";
+    static final char VERSION_SEPARATOR = ':'; // В Base64 двоеточия нет, поэтому префикс однозначно отделяется
+
+    // Секретный ключ для шифрования/дешифрования (версия 1)
     @Value("${encryption.secret-key}")
     String secretKey;
 
+    // Дополнительные версии ключа в формате "2:ключ,3:ключ"
+    @Value("${encryption.key-ring:}")
+    String keyRing;
+
+    // Версия ключа, которым шифруются новые данные
+    @Value("${encryption.active-key-version:1}")
+    int activeKeyVersion;
+
     static final String ALGORITHM = "AES/ECB/PKCS5Padding"; // AES - стандартный и надежный алгоритм шифрования, одобренный для государственных и финансовых систем.
 
-    public String encrypt(String data) {
+    // Ключи строятся один раз при старте, а не при каждом вызове
+    final Map<Integer, SecretKeySpec> keys = new HashMap<>();
+
+    // Cipher не потокобезопасен, поэтому у каждого потока свой экземпляр на каждую версию ключа, инициализированный один раз.
+    // После doFinal объект возвращается в состояние после init и готов к следующему вызову
+    final ThreadLocal<Map<Integer, Cipher>> encryptCiphers = ThreadLocal.withInitial(HashMap::new);
+    final ThreadLocal<Map<Integer, Cipher>> decryptCiphers = ThreadLocal.withInitial(HashMap::new);
+
+    @PostConstruct
+    void initKeys() {
+        keys.put(LEGACY_KEY_VERSION, createKey(LEGACY_KEY_VERSION, secretKey));
+
+        if (StringUtils.hasText(keyRing)) {
+            for (String entry : keyRing.split(",")) {
+                int separator = entry.indexOf(VERSION_SEPARATOR);
+                if (separator <= 0) {
+                    throw new EncryptionException("Элемент encryption.key-ring должен иметь вид версия:ключ");
+                }
+                int version = Integer.parseInt(entry.substring(0, separator).trim());
+                if (keys.containsKey(version)) {
+                    throw new EncryptionException("Версия ключа шифрования указана дважды: " + version);
+                }
+                keys.put(version, createKey(version, entry.substring(separator + 1).trim()));
+            }
+        }
 
-        try {
+        if (!keys.containsKey(activeKeyVersion)) {
+            throw new EncryptionException("Активная версия ключа шифрования не найдена: " + activeKeyVersion);
+        }
+    }
 
-            System.out.println("Secret key: " + secretKey); // Добавьте эту строку
-            System.out.println("Key length: " + secretKey.getBytes(StandardCharsets.UTF_8).length);
+    public int getActiveKeyVersion() {
+        return activeKeyVersion;
+    }
 
-            // Проверка входных данных
-            if (data == null || data.trim().isEmpty()) {
-                throw new EncryptionException("Данные для шифрования не могут быть пустыми");
-            }
+    public String encrypt(String data) {
 
-            // Создание ключа с явным указанием кодировки
-            byte[] keyBytes = secretKey.getBytes(StandardCharsets.UTF_8); // оборачиваем в массив байт, т.к. SecretKeySpec принимает массив байт
-            SecretKeySpec keySpec = new SecretKeySpec(keyBytes, "AES"); // оборачиваем массив байт в объект, который понимает AES и представляет собой спецификацию ключа. SecretKeySpec - это класс из Java Cryptography Architecture (JCA),
+        // Проверка входных данных
+        if (data == null || data.trim().isEmpty()) {
+            throw new EncryptionException("Данные для шифрования не могут быть пустыми");
+        }
 
-            // Инициализация шифрования
-            Cipher cipher = Cipher.getInstance(ALGORITHM); // Cipher предоставляет методы для работы с криптографией.
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec); // Инициализирует Cipher в режиме шифрования (ENCRYPT_MODE) с указанным ключом (keySpec). Теперь cipher готов к работе.
+        try {
 
             // Шифрование данных
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8)); // cipher.doFinal - выполняет шифрование данных. Возвращает зашифрованные байты.
-            return Base64.getEncoder().encodeToString(encryptedBytes); // Кодирует зашифрованные байты в строку Base64. Base64 делает их безопасными для хранения (потому что байты могут содержать непечатаемые символы).
+            byte[] encryptedBytes = cipher(encryptCiphers, Cipher.ENCRYPT_MODE, activeKeyVersion)
+                    .doFinal(data.getBytes(StandardCharsets.UTF_8)); // cipher.doFinal - выполняет шифрование данных. Возвращает зашифрованные байты.
+            return VERSION_PREFIX + activeKeyVersion + VERSION_SEPARATOR
+                    + Base64.getEncoder().encodeToString(encryptedBytes); // Кодирует зашифрованные байты в строку Base64. Base64 делает их безопасными для хранения (потому что байты могут содержать непечатаемые символы).
 
+        } catch (EncryptionException e) {
+            throw e;
         } catch (Exception e) {
+            encryptCiphers.get().remove(activeKeyVersion); // После ошибки состояние Cipher не гарантировано - следующий вызов создаст новый
             throw new EncryptionException("Ошибка при шифровании данных", e);
         }
 
@@ -54,24 +104,68 @@ public class EncryptionUtil {
 
     public String decrypt(String encryptedData) {
 
+        int version = keyVersionOf(encryptedData);
         try {
 
-            // Создание ключа
-            byte[] keyBytes = secretKey.getBytes(StandardCharsets.UTF_8);
-            SecretKeySpec keySpec = new SecretKeySpec(keyBytes, "AES");
-
-            // Инициализация дешифрования
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, keySpec);
-
-            // Дешифрование данных
-            byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedData));
+            // Дешифрование данных ключом той версии, которой они были зашифрованы
+            String payload = encryptedData.substring(encryptedData.indexOf(VERSION_SEPARATOR) + 1);
+            byte[] decryptedBytes = cipher(decryptCiphers, Cipher.DECRYPT_MODE, version)
+                    .doFinal(Base64.getDecoder().decode(payload));
             return new String(decryptedBytes, StandardCharsets.UTF_8);
 
+        } catch (EncryptionException e) {
+            throw e;
         } catch (Exception e) {
+            decryptCiphers.get().remove(version);
             throw new EncryptionException("Ошибка при дешифровании данных", e);
         }
 
     }
 
+    // Версия ключа, которой зашифрованы данные (по префиксу "vN:"). Сам Base64 может начинаться с "v",
+    // поэтому признак версии - двоеточие, которого в Base64 не бывает
+    public int keyVersionOf(String encryptedData) {
+        if (encryptedData == null) {
+            throw new EncryptionException("Зашифрованные данные не могут быть пустыми");
+        }
+        int separator = encryptedData.indexOf(VERSION_SEPARATOR);
+        if (separator < 0) {
+            return LEGACY_KEY_VERSION;
+        }
+        if (!encryptedData.startsWith(VERSION_PREFIX)) {
+            throw new EncryptionException("Некорректный формат зашифрованных данных");
+        }
+        try {
+            return Integer.parseInt(encryptedData, VERSION_PREFIX.length(), separator, 10);
+        } catch (NumberFormatException e) {
+            throw new EncryptionException("Некорректная версия ключа шифрования", e);
+        }
+    }
+
+    private Cipher cipher(ThreadLocal<Map<Integer, Cipher>> ciphers, int mode, int version) {
+        SecretKeySpec keySpec = keys.get(version);
+        if (keySpec == null) {
+            throw new EncryptionException("Ключ шифрования версии " + version + " не настроен");
+        }
+        return ciphers.get().computeIfAbsent(version, v -> createCipher(mode, keySpec));
+    }
+
+    private SecretKeySpec createKey(int version, String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8); // оборачиваем в массив байт, т.к. SecretKeySpec принимает массив байт
+        if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
+            throw new EncryptionException("Длина ключа шифрования версии " + version + " должна быть 16, 24 или 32 байта. Получено: " + keyBytes.length);
+        }
+        return new SecretKeySpec(keyBytes, "AES"); // спецификация ключа, которую понимает AES (Java Cryptography Architecture)
+    }
+
+    private Cipher createCipher(int mode, SecretKeySpec keySpec) {
+        try {
+            Cipher cipher = Cipher.getInstance(ALGORITHM); // Cipher предоставляет методы для работы с криптографией.
+            cipher.init(mode, keySpec);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new EncryptionException("Ошибка инициализации шифра", e);
+        }
+    }
+
 }
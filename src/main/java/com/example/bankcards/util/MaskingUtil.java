@@ -12,31 +12,45 @@ public class MaskingUtil {
 
     // Константы для шаблонов маскирования
     static final String CARD_MASK_PATTERN = "**** **** **** ";
-    static final int MIN_CARD_LENGTH = 13;
-    static final int MAX_CARD_LENGTH = 19;
 
     public String maskCardNumber(String cardNumber) {
 
+        // Собираем маскированный номер: "**** **** **** " + последние 4 цифры
+        return CardNumberKernel.mask(scanValid(cardNumber));
+
+    }
+
+    // Маска по уже сохраненным последним 4 цифрам (cards.last_four) - без дешифровки номера
+    public String maskLastFour(String lastFour) {
+        return CARD_MASK_PATTERN + lastFour;
+    }
+
+    public String extractLastFour(String cardNumber) {
+
+        // Получаем последние 4 цифры номера карты
+        return CardNumberKernel.lastFour(scanValid(cardNumber));
+
+    }
+
+    // Один проход по номеру вместо replaceAll("\\D", "") с компиляцией регулярного выражения и промежуточной строкой
+    private long scanValid(String cardNumber) {
+
         if (!StringUtils.hasText(cardNumber)) {
             throw new InvalidCardDataException("Номер карты не может быть null или пустым");
         }
 
-        // Удаляем все нецифровые символы (пробелы, дефисы и т.д.)
-        String digitsOnly = cardNumber.replaceAll("\\D", "");
+        long scan = CardNumberKernel.scan(cardNumber);
 
         // Проверяем длину номера карты согласно стандартам
-        if (digitsOnly.length() < MIN_CARD_LENGTH || digitsOnly.length() > MAX_CARD_LENGTH) {
+        if (!CardNumberKernel.hasValidLength(scan)) {
             throw new InvalidCardDataException(
                     String.format("Номер карты должен содержать от %d до %d цифр. Получено: %d цифр",
-                            MIN_CARD_LENGTH, MAX_CARD_LENGTH, digitsOnly.length())
+                            CardNumberKernel.MIN_CARD_LENGTH, CardNumberKernel.MAX_CARD_LENGTH,
+                            CardNumberKernel.digitCount(scan))
             );
         }
 
-        // Получаем последние 4 цифры номера карты
-        String lastFour = digitsOnly.substring(digitsOnly.length() - 4);
-
-        // Собираем маскированный номер: "**** **** **** " + последние 4 цифры
-        return CARD_MASK_PATTERN + lastFour;
+        return scan;
 
     }
 }
@@ -15,9 +15,6 @@ import java.time.LocalDate;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class ValidationUtil {
 
-    static final int MIN_CARD_LENGTH = 13;
-    static final int MAX_CARD_LENGTH = 19;
-
     // Делаем лимиты настраиваемые через конфигурацию
     @Value("${validation.max-transfer-amount:100000000}")
     BigDecimal maxTransferAmount;
@@ -32,33 +29,11 @@ public class ValidationUtil {
             return false;
         }
 
-        // Удаляем все нецифровые символы
-        String digitsOnly = cardNumber.replaceAll("\\D", "");
-
-        // Проверяем длину номера карты
-        if (digitsOnly.length() < MIN_CARD_LENGTH || digitsOnly.length() > MAX_CARD_LENGTH) {
-            return false;
-        }
-
-        // Реализация алгоритма Луна
-        int sum = 0;
-        boolean alternate = false;
-
-        for (int i = digitsOnly.length() - 1; i >= 0; i--) {
-            int digit = Character.getNumericValue(digitsOnly.charAt(i));
-
-            if (alternate) {
-                digit *= 2;
-                if (digit > 9) {
-                    digit = digit - 9;
-                }
-            }
-
-            sum += digit;
-            alternate = !alternate;
-        }
+        // Извлечение цифр, подсчет длины и контрольная сумма Луна - за один проход по символам
+        long scan = CardNumberKernel.scan(cardNumber);
 
-        return (sum % 10 == 0);
+        // Проверяем длину номера карты и контрольную сумму
+        return CardNumberKernel.hasValidLength(scan) && CardNumberKernel.isLuhnValid(scan);
     }
 
     public void validateCardNumber(String cardNumber) {
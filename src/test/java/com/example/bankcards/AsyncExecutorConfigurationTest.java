@@ -0,0 +1,28 @@
+package com.example.bankcards;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncExecutorConfigurationTest extends PostgresIntegrationTest {
+
+    @Autowired
+    RequestMappingHandlerAdapter handlerAdapter;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    ThreadPoolTaskExecutor applicationTaskExecutor;
+
+    @Test
+    void mvcAsyncUsesBoundedApplicationExecutor() {
+        // Потоковые выгрузки должны идти через ограниченный пул, а не через SimpleAsyncTaskExecutor
+        assertThat(ReflectionTestUtils.getField(handlerAdapter, "taskExecutor")).isSameAs(applicationTaskExecutor);
+        assertThat(applicationTaskExecutor.getMaxPoolSize()).isEqualTo(8);
+        assertThat(applicationTaskExecutor.getQueueCapacity()).isEqualTo(100);
+    }
+}
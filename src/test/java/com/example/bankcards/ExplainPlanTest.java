@@ -0,0 +1,136 @@
+package com.example.bankcards;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * База для проверок планов запросов: SQL, который на самом деле сгенерировал Hibernate, перехватывается
+ * через StatementInspector и выполняется как EXPLAIN с теми же значениями параметров.
+ * Значения передаются через extended protocol, поэтому PostgreSQL строит план под конкретные значения,
+ * как и для запроса приложения. Данные для планов засеиваются один раз на класс и удаляются после него,
+ * чтобы не влиять на остальные тесты общей базы
+ */
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.bankcards.ExplainPlanTest$SqlRecorder")
+public abstract class ExplainPlanTest extends PostgresIntegrationTest {
+
+    protected static final int SEED_USERS = 1_000;
+    protected static final int SEED_CARDS = 100_000;
+    protected static final int SEED_BLOCK_REQUESTS = 50_000;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    // Через что удалить засеянные данные после класса; null - класс ничего не засеивал (например, пропущен без базы)
+    private static JdbcTemplate seedOwner;
+
+    // Выполняет действие и возвращает последний отправленный в БД SELECT
+    protected String capturedSelect(Runnable action) {
+        List<String> selects = capturedSelects(action);
+        return selects.get(selects.size() - 1);
+    }
+
+    // Все SELECT действия по порядку: у Page это запрос страницы и count
+    protected List<String> capturedSelects(Runnable action) {
+        SqlRecorder.selects.get().clear();
+        action.run();
+        List<String> selects = List.copyOf(SqlRecorder.selects.get());
+        assertThat(selects).as("Hibernate не выполнил SELECT").isNotEmpty();
+        return selects;
+    }
+
+    protected String explain(String sql, Object... params) {
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, params);
+        return String.join("\n", plan);
+    }
+
+    protected void assertNoSeqScan(String plan, String table) {
+        assertThat(plan).as(plan).doesNotContain("Seq Scan on " + table);
+    }
+
+    // Пользователи explain-1..N и карты с разбросом по всем полям, по которым есть фильтры
+    protected void seedCards() {
+        seedOwner = jdbcTemplate;
+        Integer seeded = jdbcTemplate.queryForObject("SELECT count(*) FROM users WHERE username = 'explain-1'", Integer.class);
+        if (seeded != null && seeded > 0) {
+            return;
+        }
+
+        jdbcTemplate.update("INSERT INTO users (id, username, password, first_name, last_name, role, enabled) " +
+                "SELECT nextval('users_seq'), 'explain-' || g, 'x', 'Explain', 'User', 'USER', true " +
+                "FROM generate_series(1, ?) g", SEED_USERS);
+        jdbcTemplate.update("INSERT INTO cards (id, encrypted_number, last_four, number_hash, key_version, owner, " +
+                "expiration_date, status, balance, user_id, version) " +
+                "SELECT nextval('cards_seq'), 'seed', lpad((g % 10000)::text, 4, '0'), md5('explain-card-' || g), 1, " +
+                "'Explain Owner ' || (g % 5000), current_date + (g % 3650), " +
+                "CASE WHEN g % 50 = 0 THEN 'BLOCKED' ELSE 'ACTIVE' END, (g % 1000000) / 100.0, u.ids[1 + g % ?], 0 " +
+                "FROM generate_series(1, ?) g, " +
+                "(SELECT array_agg(id ORDER BY id) AS ids FROM users WHERE username LIKE 'explain-%') u",
+                SEED_USERS, SEED_CARDS);
+        jdbcTemplate.execute("ANALYZE users");
+        jdbcTemplate.execute("ANALYZE cards");
+    }
+
+    // Запросы на блокировку по засеянным картам: почти все обработаны, ожидающих - единицы, как в рабочей базе
+    protected void seedBlockRequests() {
+        seedCards();
+        Integer seeded = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM block_requests WHERE reason = 'explain-seed'", Integer.class);
+        if (seeded != null && seeded > 0) {
+            return;
+        }
+
+        jdbcTemplate.update("INSERT INTO block_requests (id, card_id, user_id, status, created_at, processed_at, " +
+                "processed_by, reason) " +
+                "SELECT nextval('block_requests_seq'), c.id, c.user_id, " +
+                "CASE WHEN c.rn % 500 = 0 THEN 'PENDING' WHEN c.rn % 2 = 0 THEN 'APPROVED' ELSE 'REJECTED' END, " +
+                "now() - make_interval(mins => c.rn::int), " +
+                "CASE WHEN c.rn % 500 = 0 THEN NULL ELSE now() END, " +
+                "CASE WHEN c.rn % 500 = 0 THEN NULL ELSE c.user_id END, 'explain-seed' " +
+                "FROM (SELECT id, user_id, row_number() OVER (ORDER BY id) AS rn FROM cards " +
+                "WHERE encrypted_number = 'seed') c WHERE c.rn <= ?", SEED_BLOCK_REQUESTS);
+        jdbcTemplate.execute("ANALYZE block_requests");
+    }
+
+    @AfterAll
+    static void dropSeed() {
+        JdbcTemplate jdbcTemplate = seedOwner;
+        if (jdbcTemplate == null) {
+            return;
+        }
+        seedOwner = null;
+
+        jdbcTemplate.update("DELETE FROM block_requests WHERE card_id IN (SELECT id FROM cards WHERE encrypted_number = 'seed')");
+        jdbcTemplate.update("DELETE FROM cards WHERE encrypted_number = 'seed'");
+        jdbcTemplate.update("DELETE FROM users WHERE username LIKE 'explain-%'");
+        jdbcTemplate.execute("ANALYZE users");
+        jdbcTemplate.execute("ANALYZE cards");
+        jdbcTemplate.execute("ANALYZE block_requests");
+    }
+
+    protected long seededUserId(int n) {
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, "explain-" + n);
+    }
+
+    public static class SqlRecorder implements StatementInspector {
+
+        static final ThreadLocal<List<String>> selects = ThreadLocal.withInitial(ArrayList::new);
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select")) {
+                selects.get().add(sql);
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.bankcards;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * База для тестов, которым нужна настоящая PostgreSQL: блокировки, план запросов, секционирование.
+ * Запускаются только при заданной TEST_DB_URL (например, jdbc:postgresql://localhost:5432/bank_test),
+ * схему создает Liquibase из тех же миграций. Фоновые задачи отключены, чтобы не менять данные во время теста
+ */
+@SpringBootTest
+public abstract class PostgresIntegrationTest {
+
+    // Условия JUnit вроде @EnabledIfEnvironmentVariable не наследуются подклассами, поэтому проверка - здесь.
+    // @BeforeAll выполняется раньше, чем Spring поднимает контекст, и без базы тесты пропускаются
+    @BeforeAll
+    static void requirePostgres() {
+        String url = System.getenv("TEST_DB_URL");
+        assumeTrue(url != null && !url.isBlank(), "TEST_DB_URL не задана");
+    }
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_DB_URL"));
+        registry.add("spring.datasource.username", () -> env("TEST_DB_USERNAME", "postgres"));
+        registry.add("spring.datasource.password", () -> env("TEST_DB_PASSWORD", "postgres"));
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("cards.backfill.enabled", () -> "false");
+        registry.add("encryption.rotation.enabled", () -> "false");
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
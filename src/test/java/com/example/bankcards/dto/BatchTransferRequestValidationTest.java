@@ -0,0 +1,67 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchTransferRequestValidationTest {
+
+    private static ValidatorFactory factory;
+    private static Validator validator;
+
+    @BeforeAll
+    static void setUp() {
+        factory = Validation.buildDefaultValidatorFactory();
+        validator = factory.getValidator();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    void acceptsValidTransfers() {
+        BatchTransferRequest request = new BatchTransferRequest(List.of(transfer(new BigDecimal("10.00"))));
+
+        assertThat(validator.validate(request)).isEmpty();
+    }
+
+    @Test
+    void rejectsNullElement() {
+        BatchTransferRequest request = new BatchTransferRequest(Arrays.asList(transfer(BigDecimal.ONE), null));
+
+        Set<ConstraintViolation<BatchTransferRequest>> violations = validator.validate(request);
+
+        assertThat(violations).extracting(v -> v.getPropertyPath().toString())
+                .containsExactly("transfers[1].<list element>");
+    }
+
+    @Test
+    void validatesNestedElements() {
+        BatchTransferRequest request = new BatchTransferRequest(List.of(transfer(new BigDecimal("-1"))));
+
+        assertThat(validator.validate(request)).extracting(v -> v.getPropertyPath().toString())
+                .containsExactly("transfers[0].amount");
+    }
+
+    @Test
+    void rejectsEmptyList() {
+        assertThat(validator.validate(new BatchTransferRequest(List.of()))).hasSize(1);
+    }
+
+    private TransferRequest transfer(BigDecimal amount) {
+        return new TransferRequest(1L, 2L, amount);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.bankcards.job;
+
+import com.example.bankcards.ExplainPlanTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// После завершения ротации (все карты уже на текущей версии ключа) запросы задачи идут по idx_cards_key_version,
+// а не просматривают всю таблицу. Засеянные карты зашифрованы версией 1
+class CardReEncryptionExplainTest extends ExplainPlanTest {
+
+    static final int CURRENT_VERSION = 1;
+
+    @BeforeEach
+    void seed() {
+        seedCards();
+    }
+
+    @Test
+    void remainingRowsAreCountedByIndex() {
+        String plan = explain(CardReEncryptionJob.COUNT_REMAINING_SQL, CURRENT_VERSION, CURRENT_VERSION);
+
+        assertNoSeqScan(plan, "cards");
+        assertUsesKeyVersionRange(plan);
+    }
+
+    @Test
+    void chunkIsSelectedByIndex() {
+        String plan = explain(CardReEncryptionJob.SELECT_CHUNK_SQL, 0L, CURRENT_VERSION, CURRENT_VERSION, 200);
+
+        assertNoSeqScan(plan, "cards");
+        assertUsesKeyVersionRange(plan);
+    }
+
+    // Условие key_version <> ? дало бы полный просмотр индекса с Filter - нужен именно поиск по диапазону
+    private void assertUsesKeyVersionRange(String plan) {
+        assertThat(plan).contains("idx_cards_key_version").contains("Index Cond: (key_version");
+    }
+}
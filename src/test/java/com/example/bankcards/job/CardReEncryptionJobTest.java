@@ -0,0 +1,94 @@
+package com.example.bankcards.job;
+
+import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CardReEncryptionJobTest {
+
+    private static final String RESET_CHECKPOINT = "UPDATE card_reencryption_checkpoints SET last_card_id = 0";
+
+    @Mock
+    JdbcTemplate jdbcTemplate;
+
+    @Mock
+    TransactionTemplate transactionTemplate;
+
+    @Mock
+    EncryptionUtil encryptionUtil;
+
+    CardReEncryptionJob job;
+
+    @BeforeEach
+    void setUp() {
+        job = new CardReEncryptionJob(jdbcTemplate, transactionTemplate, encryptionUtil, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(job, "enabled", true);
+        ReflectionTestUtils.setField(job, "chunkSize", 200);
+        ReflectionTestUtils.setField(job, "rowsPerSecond", 0);
+        ReflectionTestUtils.setField(job, "maxRunDuration", Duration.ofMinutes(1));
+        job.registerMetrics();
+
+        // Три строки перешифровать не удается ни одной версией: каждый проход сразу доходит до конца таблицы
+        Map<String, Object> checkpoint = new HashMap<>();
+        checkpoint.put("last_card_id", 0L);
+        checkpoint.put("completed_at", null);
+        when(jdbcTemplate.queryForMap(anyString(), anyInt())).thenReturn(checkpoint);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), anyInt(), anyInt())).thenReturn(3L);
+        when(jdbcTemplate.queryForList(anyString(), anyLong(), anyInt(), anyInt(), anyInt())).thenReturn(List.of());
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void stopsWhenPassChangesNothing() {
+        when(encryptionUtil.getActiveKeyVersion()).thenReturn(2);
+
+        job.reEncrypt();
+        job.reEncrypt();
+        job.reEncrypt();
+
+        // Второй проход оставил столько же строк - третий запуск уже ничего не делает
+        verify(jdbcTemplate, times(1)).update(startsWith(RESET_CHECKPOINT), eq(2));
+        verify(transactionTemplate, times(2)).execute(any());
+        assertThat(ReflectionTestUtils.getField(job, "completedVersion")).isEqualTo(2);
+    }
+
+    @Test
+    void newKeyVersionDoesNotReusePreviousPassResult() {
+        when(encryptionUtil.getActiveKeyVersion()).thenReturn(2);
+        job.reEncrypt();
+        job.reEncrypt();
+
+        // После смены ключа остаток прошлой версии совпадает с новым, но проход по версии 3 - первый
+        when(encryptionUtil.getActiveKeyVersion()).thenReturn(3);
+        job.reEncrypt();
+
+        verify(jdbcTemplate).update(startsWith(RESET_CHECKPOINT), eq(3));
+        assertThat(ReflectionTestUtils.getField(job, "completedVersion")).isEqualTo(2);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.ExplainPlanTest;
+import com.example.bankcards.dto.CardSearchCriteria;
+import com.example.bankcards.entity.CardStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Каждый фильтр GET /cards/search должен обслуживаться индексом из 20251009000000-add-cards-search-indexes.yml,
+// а не полным просмотром cards. Параметры EXPLAIN - в порядке SQL: значения фильтра, afterId, LIMIT
+class CardSearchExplainTest extends ExplainPlanTest {
+
+    static final int LIMIT = 21;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @BeforeEach
+    void seed() {
+        seedCards();
+    }
+
+    @Test
+    void searchSelectsOnlyProjectionColumnsWithoutCount() {
+        String sql = capturedSelect(() -> cardRepository.searchViews(new CardSearchCriteria(), 0L, LIMIT));
+
+        assertThat(sql.toLowerCase()).doesNotContain("count(").doesNotContain("join").doesNotContain("offset");
+        assertThat(sql.toLowerCase()).doesNotContain("version").doesNotContain("number_hash");
+    }
+
+    @Test
+    void userFilterUsesIndex() {
+        long userId = seededUserId(7);
+        String plan = plan(CardSearchCriteria.builder().userId(userId).build(), userId);
+
+        assertNoSeqScan(plan, "cards");
+        assertThat(plan).containsAnyOf("idx_cards_user_id_id", "idx_cards_user_id_status");
+    }
+
+    @Test
+    void inactiveStatusUsesPartialIndex() {
+        String plan = plan(CardSearchCriteria.builder().status(CardStatus.BLOCKED).build(), CardStatus.BLOCKED.name());
+
+        assertNoSeqScan(plan, "cards");
+        assertThat(plan).contains("idx_cards_status_inactive");
+    }
+
+    @Test
+    void activeStatusWalksPrimaryKey() {
+        // ACTIVE - почти вся таблица: индекс по статусу не нужен, страница читается по первичному ключу
+        assertNoSeqScan(plan(CardSearchCriteria.builder().status(CardStatus.ACTIVE).build(), CardStatus.ACTIVE.name()),
+                "cards");
+    }
+
+    @Test
+    void expirationRangeUsesIndex() {
+        LocalDate from = LocalDate.now().plusDays(100);
+        LocalDate to = from.plusDays(5);
+        String plan = plan(CardSearchCriteria.builder().expiresFrom(from).expiresTo(to).build(),
+                Date.valueOf(from), Date.valueOf(to));
+
+        assertNoSeqScan(plan, "cards");
+        assertThat(plan).contains("idx_cards_expiration_date");
+    }
+
+    @Test
+    void balanceRangeUsesIndex() {
+        BigDecimal min = new BigDecimal("500.00");
+        BigDecimal max = new BigDecimal("500.10");
+        String plan = plan(CardSearchCriteria.builder().minBalance(min).maxBalance(max).build(), min, max);
+
+        assertNoSeqScan(plan, "cards");
+        assertThat(plan).contains("idx_cards_balance");
+    }
+
+    @Test
+    void ownerPrefixUsesExpressionIndex() {
+        String plan = plan(CardSearchCriteria.builder().ownerPrefix("explain owner 4321").build(), "EXPLAIN OWNER 4321%");
+
+        assertNoSeqScan(plan, "cards");
+        assertThat(plan).contains("idx_cards_owner_upper_prefix");
+    }
+
+    private String plan(CardSearchCriteria criteria, Object... filterValues) {
+        String sql = capturedSelect(() -> cardRepository.searchViews(criteria, 0L, LIMIT));
+
+        Object[] params = new Object[filterValues.length + 2];
+        System.arraycopy(filterValues, 0, params, 0, filterValues.length);
+        params[filterValues.length] = 0L;
+        params[filterValues.length + 1] = LIMIT;
+        return explain(sql, params);
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.ExplainPlanTest;
+import com.example.bankcards.entity.BlockRequestStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Запросы CardRepository, UserRepository и BlockRequestRepository обслуживаются индексами, а не полным
+// просмотром таблиц. Параметры EXPLAIN - в порядке SQL; у exists-запросов последний параметр - fetch first 1
+class RepositoryIndexExplainTest extends ExplainPlanTest {
+
+    static final int PAGE = 20;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    BlockRequestRepository blockRequestRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    long userId;
+
+    @BeforeEach
+    void seed() {
+        seedBlockRequests();
+        userId = seededUserId(7);
+    }
+
+    @Test
+    void cardsOfUser() {
+        String plan = explain(capturedSelect(() -> cardRepository.findAllByUserId(userId)), userId);
+
+        assertNoSeqScan(plan, "cards");
+        assertThat(plan).containsAnyOf("idx_cards_user_id_id", "idx_cards_user_id_status");
+    }
+
+    @Test
+    void cardPageOfUserAndItsCount() {
+        List<String> selects = capturedSelects(() -> cardRepository.findAllByUserId(userId, PageRequest.of(1, PAGE)));
+        assertThat(selects).hasSize(2);
+
+        String content = explain(selects.get(0), userId, PAGE, PAGE);
+        String count = explain(selects.get(1), userId);
+
+        assertNoSeqScan(content, "cards");
+        assertThat(content).containsAnyOf("idx_cards_user_id_id", "idx_cards_user_id_status");
+        assertNoSeqScan(count, "cards");
+        assertThat(count).containsAnyOf("idx_cards_user_id_id", "idx_cards_user_id_status");
+    }
+
+    @Test
+    void cardViewKeysetPages() {
+        String all = explain(capturedSelect(() -> cardRepository.findViewsAfter(0L, Limit.of(PAGE))), 0L, PAGE);
+        String ofUser = explain(capturedSelect(() -> cardRepository.findViewsByUserIdAfter(userId, 0L, Limit.of(PAGE))),
+                userId, 0L, PAGE);
+
+        assertNoSeqScan(all, "cards");
+        assertThat(all).contains("cards_pkey");
+        assertNoSeqScan(ofUser, "cards");
+        assertThat(ofUser).contains("idx_cards_user_id_id");
+    }
+
+    @Test
+    void cardByNumberHash() {
+        String find = explain(capturedSelect(() -> cardRepository.findByNumberHash("absent")), "absent");
+        String exists = explain(capturedSelect(() -> cardRepository.existsByNumberHash("absent")), "absent", 1);
+
+        assertThat(find).contains("uk_cards_number_hash");
+        assertThat(exists).contains("uk_cards_number_hash");
+    }
+
+    @Test
+    void cardsLockedForTransfer() {
+        String sql = capturedSelect(() -> transactionTemplate.executeWithoutResult(
+                status -> cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))));
+        String plan = explain(sql, 1L, 2L);
+
+        assertNoSeqScan(plan, "cards");
+        assertThat(plan).contains("cards_pkey");
+    }
+
+    @Test
+    void userByUsername() {
+        String find = explain(capturedSelect(() -> userRepository.findByUsername("explain-7")), "explain-7");
+        String exists = explain(capturedSelect(() -> userRepository.existsByUsername("explain-7")), "explain-7", 1);
+
+        assertThat(find).contains("users_username_key");
+        assertThat(exists).contains("users_username_key");
+    }
+
+    @Test
+    void userKeysetPage() {
+        String plan = explain(capturedSelect(() -> userRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(PAGE))),
+                0L, PAGE);
+
+        assertNoSeqScan(plan, "users");
+        assertThat(plan).contains("users_pkey");
+    }
+
+    @Test
+    void pendingBlockRequestsUsePartialIndex() {
+        // users присоединяются хешем целиком - это справочник, а не растущая таблица
+        String plan = explain(capturedSelect(() -> blockRequestRepository.findByStatus(BlockRequestStatus.PENDING)),
+                BlockRequestStatus.PENDING.name());
+
+        assertNoSeqScan(plan, "block_requests");
+        assertNoSeqScan(plan, "cards");
+        assertThat(plan).contains("idx_block_requests_pending");
+    }
+
+    @Test
+    void blockRequestsOfUser() {
+        String plan = explain(capturedSelect(() -> blockRequestRepository.findByUserId(userId)), userId);
+
+        assertNoSeqScan(plan, "block_requests");
+        assertNoSeqScan(plan, "cards");
+        assertThat(plan).contains("idx_block_requests_user_id");
+    }
+
+    @Test
+    void blockRequestOfCardByStatus() {
+        long cardId = jdbcTemplate.queryForObject(
+                "SELECT card_id FROM block_requests WHERE status = 'PENDING' ORDER BY id LIMIT 1", Long.class);
+        String pending = BlockRequestStatus.PENDING.name();
+
+        String exists = explain(capturedSelect(() ->
+                blockRequestRepository.existsByCardIdAndStatus(cardId, BlockRequestStatus.PENDING)), cardId, pending, 1);
+        String find = explain(capturedSelect(() ->
+                blockRequestRepository.findByCardIdAndStatus(cardId, BlockRequestStatus.PENDING)), cardId, pending);
+
+        assertNoSeqScan(exists, "block_requests");
+        assertThat(exists).contains("idx_block_requests_card_id_status");
+        assertNoSeqScan(find, "block_requests");
+        assertThat(find).contains("idx_block_requests_card_id_status");
+    }
+}
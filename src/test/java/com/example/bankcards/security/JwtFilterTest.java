@@ -0,0 +1,95 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JwtFilterTest {
+
+    @Mock
+    UserDetailsCache userDetailsCache;
+
+    JwtUtil jwtUtil;
+    JwtFilter jwtFilter;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = JwtUtilTest.jwtUtil(JwtUtilTest.SECRET, 60_000L);
+        jwtFilter = new JwtFilter(jwtUtil, userDetailsCache);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void authenticatesActiveUserWithIdFromTokenAndRoleFromCache() throws Exception {
+        when(userDetailsCache.get("ivan")).thenReturn(user("ivan", "ADMIN", true));
+
+        Authentication authentication = filter(jwtUtil.generateToken("ivan", 42L));
+
+        JwtUserPrincipal principal = (JwtUserPrincipal) authentication.getPrincipal();
+        assertThat(principal.getId()).isEqualTo(42L);
+        assertThat(principal.isAdmin()).isTrue();
+    }
+
+    @Test
+    void demotedUserLosesAdminRoleBeforeTokenExpires() throws Exception {
+        when(userDetailsCache.get("ivan")).thenReturn(user("ivan", "USER", true));
+
+        Authentication authentication = filter(jwtUtil.generateToken("ivan", 42L));
+
+        assertThat(authentication.getAuthorities()).extracting(Object::toString).containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void disabledUserIsNotAuthenticated() throws Exception {
+        when(userDetailsCache.get("ivan")).thenReturn(user("ivan", "USER", false));
+
+        assertThat(filter(jwtUtil.generateToken("ivan", 42L))).isNull();
+    }
+
+    @Test
+    void deletedUserIsNotAuthenticated() throws Exception {
+        when(userDetailsCache.get("ivan")).thenThrow(new UsernameNotFoundException("ivan"));
+
+        assertThat(filter(jwtUtil.generateToken("ivan", 42L))).isNull();
+    }
+
+    @Test
+    void invalidTokenDoesNotHitCache() throws Exception {
+        assertThat(filter("not-a-jwt")).isNull();
+        verifyNoInteractions(userDetailsCache);
+    }
+
+    private Authentication filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        MockFilterChain chain = new MockFilterChain();
+
+        jwtFilter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isNotNull();
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private User user(String username, String role, boolean enabled) {
+        return (User) User.withUsername(username).password("hash").roles(role).disabled(!enabled).build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.Role;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtUtilTest {
+
+    static final String SECRET = "test-secret-key-that-is-long-enough-for-hs256";
+
+    @Test
+    void parsesClaimsOfIssuedToken() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, 60_000L);
+
+        Claims claims = jwtUtil.parseClaims(jwtUtil.generateToken("ivan", 42L));
+
+        assertThat(claims.getSubject()).isEqualTo("ivan");
+        assertThat(claims.get("userId", Long.class)).isEqualTo(42L);
+        assertThat(claims.get("role")).isNull();
+    }
+
+    @Test
+    void rejectsMalformedTamperedAndForeignTokens() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, 60_000L);
+        String token = jwtUtil.generateToken("ivan", 42L);
+        String foreign = jwtUtil("another-secret-key-that-is-long-enough-for-hs256", 60_000L)
+                .generateToken("ivan", 42L);
+
+        assertThat(jwtUtil.parseClaims("not-a-jwt")).isNull();
+        assertThat(jwtUtil.parseClaims("")).isNull();
+        assertThat(jwtUtil.parseClaims(token.substring(0, token.length() - 2))).isNull();
+        assertThat(jwtUtil.parseClaims(foreign)).isNull();
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, -1_000L);
+
+        assertThat(jwtUtil.parseClaims(jwtUtil.generateToken("ivan", 42L))).isNull();
+    }
+
+    @Test
+    void principalTakesIdFromClaimsAndRoleFromUserDetails() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, 60_000L);
+        Claims claims = jwtUtil.parseClaims(jwtUtil.generateToken("ivan", 42L));
+
+        JwtUserPrincipal principal = jwtUtil.toPrincipal(claims,
+                User.withUsername("ivan").password("hash").roles("USER").build());
+
+        assertThat(principal.getId()).isEqualTo(42L);
+        assertThat(principal.getUsername()).isEqualTo("ivan");
+        assertThat(principal.getRole()).isEqualTo(Role.USER);
+    }
+
+    @Test
+    void verifiedCacheReturnsSameClaimsForRepeatedToken() {
+        JwtUtil jwtUtil = cachingJwtUtil(60_000L);
+        String token = jwtUtil.generateToken("ivan", 42L);
+
+        Claims first = jwtUtil.parseClaims(token);
+
+        assertThat(jwtUtil.parseClaims(token)).isSameAs(first);
+        assertThat(jwtUtil.parseClaims(jwtUtil.generateToken("petr", 7L))).isNotSameAs(first);
+    }
+
+    @Test
+    void verifiedCacheDoesNotStoreInvalidTokens() {
+        JwtUtil jwtUtil = cachingJwtUtil(60_000L);
+        String token = jwtUtil.generateToken("ivan", 42L);
+        String tampered = token.substring(0, token.length() - 2);
+
+        assertThat(jwtUtil.parseClaims(tampered)).isNull();
+        assertThat(jwtUtil.parseClaims(tampered)).isNull();
+        assertThat(jwtUtil.parseClaims(token)).isNotNull();
+    }
+
+    @Test
+    void verifiedCacheEntryExpiresWithToken() throws InterruptedException {
+        JwtUtil jwtUtil = cachingJwtUtil(1_000L);
+        String token = jwtUtil.generateToken("ivan", 42L);
+        assertThat(jwtUtil.parseClaims(token)).isNotNull();
+
+        // exp в JWT хранится с точностью до секунды
+        Thread.sleep(2_000L);
+
+        assertThat(jwtUtil.parseClaims(token)).isNull();
+    }
+
+    @Test
+    void withoutCacheEveryCallVerifiesToken() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, 60_000L);
+        String token = jwtUtil.generateToken("ivan", 42L);
+
+        assertThat(jwtUtil.parseClaims(token)).isNotSameAs(jwtUtil.parseClaims(token));
+    }
+
+    private static JwtUtil cachingJwtUtil(long expiration) {
+        JwtUtil jwtUtil = new JwtUtil(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", expiration);
+        ReflectionTestUtils.setField(jwtUtil, "verifiedCacheEnabled", true);
+        ReflectionTestUtils.setField(jwtUtil, "verifiedCacheMaxSize", 100L);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    static JwtUtil jwtUtil(String secret, long expiration) {
+        JwtUtil jwtUtil = new JwtUtil(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtUtil, "secret", secret);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", expiration);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.security.LoginRateLimiter.SlidingWindowCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginRateLimiterTest {
+
+    static final long WINDOW = 60_000L;
+
+    @Test
+    void allowsUpToLimitWithinWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        long start = WINDOW * 10;
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(counter.tryAcquire(start + i, WINDOW, 3)).isTrue();
+        }
+        assertThat(counter.tryAcquire(start + 3, WINDOW, 3)).isFalse();
+        assertThat(counter.isExhausted(start + 3, WINDOW, 3)).isTrue();
+    }
+
+    @Test
+    void previousIntervalCountsWithDecreasingWeight() {
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        long start = WINDOW * 10;
+        for (int i = 0; i < 4; i++) {
+            counter.record(start, WINDOW);
+        }
+
+        // Середина следующего интервала: 4 прошлые попытки весят 2
+        assertThat(counter.isExhausted(start + WINDOW + WINDOW / 2, WINDOW, 3)).isFalse();
+        assertThat(counter.tryAcquire(start + WINDOW + WINDOW / 2, WINDOW, 3)).isTrue();
+        assertThat(counter.tryAcquire(start + WINDOW + WINDOW / 2, WINDOW, 3)).isFalse();
+    }
+
+    @Test
+    void olderTimestampAfterIntervalChangeDoesNotResetWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        long boundary = WINDOW * 11;
+        for (int i = 0; i < 3; i++) {
+            assertThat(counter.tryAcquire(boundary + i, WINDOW, 3)).isTrue();
+        }
+
+        // Потоки с отметками до смены интервала пришли последними: попытки текущего интервала не теряются
+        counter.record(boundary - 1, WINDOW);
+        assertThat(counter.tryAcquire(boundary - 1, WINDOW, 3)).isFalse();
+        assertThat(counter.isExhausted(boundary - 1, WINDOW, 3)).isTrue();
+        assertThat(counter.tryAcquire(boundary + 10, WINDOW, 3)).isFalse();
+        assertThat(counter.isExhausted(boundary + 10, WINDOW, 5)).isFalse();
+        counter.record(boundary + 10, WINDOW);
+        assertThat(counter.isExhausted(boundary + 10, WINDOW, 5)).isTrue();
+    }
+
+    @Test
+    void countersResetAfterTwoIdleIntervals() {
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        long start = WINDOW * 10;
+        for (int i = 0; i < 5; i++) {
+            counter.record(start, WINDOW);
+        }
+
+        assertThat(counter.isExhausted(start, WINDOW, 5)).isTrue();
+        assertThat(counter.isExhausted(start + 2 * WINDOW, WINDOW, 1)).isFalse();
+    }
+
+    @Test
+    void isExhaustedDoesNotCountAttempt() {
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        long now = WINDOW * 10;
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(counter.isExhausted(now, WINDOW, 1)).isFalse();
+        }
+        counter.record(now, WINDOW);
+        assertThat(counter.isExhausted(now, WINDOW, 1)).isTrue();
+    }
+
+    @Test
+    void concurrentAcquiresNeverExceedLimit() throws Exception {
+        SlidingWindowCounter counter = new SlidingWindowCounter();
+        long now = WINDOW * 10;
+        int threads = 8;
+        int limit = 1_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Callable<Integer> task = () -> {
+                    start.await();
+                    int acquired = 0;
+                    for (int i = 0; i < limit; i++) {
+                        if (counter.tryAcquire(now, WINDOW, limit)) {
+                            acquired++;
+                        }
+                    }
+                    return acquired;
+                };
+                results.add(executor.submit(task));
+            }
+            start.countDown();
+
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+            assertThat(total).isEqualTo(limit);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
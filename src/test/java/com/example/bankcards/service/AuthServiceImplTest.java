@@ -0,0 +1,144 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.JwtUtil;
+import com.example.bankcards.security.LoginRateLimiter;
+import com.example.bankcards.service.impl.AuthServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AuthServiceImplTest {
+
+    static final int PER_USER_LIMIT = 3;
+
+    @Mock
+    UserRepository userRepository;
+
+    @Mock
+    PasswordEncoder passwordEncoder;
+
+    @Mock
+    JwtUtil jwtUtil;
+
+    LoginRateLimiter loginRateLimiter;
+    ThreadPoolTaskExecutor loginExecutor;
+    AuthServiceImpl authService;
+
+    @BeforeEach
+    void setUp() {
+        loginRateLimiter = new LoginRateLimiter();
+        ReflectionTestUtils.setField(loginRateLimiter, "window", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(loginRateLimiter, "perUserLimit", PER_USER_LIMIT);
+        ReflectionTestUtils.setField(loginRateLimiter, "perIpLimit", 1_000);
+        ReflectionTestUtils.setField(loginRateLimiter, "maxTrackedKeys", 100L);
+        ReflectionTestUtils.invokeMethod(loginRateLimiter, "init");
+
+        loginExecutor = new ThreadPoolTaskExecutor();
+        loginExecutor.setCorePoolSize(1);
+        loginExecutor.setMaxPoolSize(1);
+        loginExecutor.setQueueCapacity(1);
+        loginExecutor.initialize();
+
+        authService = new AuthServiceImpl(userRepository, passwordEncoder, jwtUtil, loginRateLimiter,
+                loginExecutor, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(authService, "loginTimeout", Duration.ofSeconds(5));
+
+        User user = new User();
+        user.setId(42L);
+        user.setUsername("ivan");
+        user.setPassword("hash");
+        user.setRole(Role.USER);
+        lenient().when(userRepository.findByUsername("ivan")).thenReturn(Optional.of(user));
+        lenient().when(jwtUtil.generateToken("ivan", 42L)).thenReturn("token");
+    }
+
+    @AfterEach
+    void tearDown() {
+        loginExecutor.shutdown();
+    }
+
+    @Test
+    void successfulLoginsDoNotCountAgainstUserLimit() {
+        when(passwordEncoder.matches("secret", "hash")).thenReturn(true);
+
+        for (int i = 0; i < PER_USER_LIMIT * 3; i++) {
+            assertThat(authService.authenticate("ivan", "secret", "10.0.0.1").getToken()).isEqualTo("token");
+        }
+    }
+
+    @Test
+    void failedLoginsBlockUserBeforePasswordCheck() {
+        when(passwordEncoder.matches("wrong", "hash")).thenReturn(false);
+
+        for (int i = 0; i < PER_USER_LIMIT; i++) {
+            assertThatThrownBy(() -> authService.authenticate("ivan", "wrong", "10.0.0.1"))
+                    .hasMessage("Invalid password");
+        }
+
+        assertThatThrownBy(() -> authService.authenticate("ivan", "secret", "10.0.0.1"))
+                .isInstanceOf(TooManyRequestsException.class);
+        verify(passwordEncoder, times(PER_USER_LIMIT)).matches(anyString(), eq("hash"));
+    }
+
+    @Test
+    void unknownUsernamesCountAsFailures() {
+        for (int i = 0; i < PER_USER_LIMIT; i++) {
+            assertThatThrownBy(() -> authService.authenticate("ghost", "secret", "10.0.0.1"))
+                    .hasMessage("User not found");
+        }
+
+        assertThatThrownBy(() -> authService.authenticate("ghost", "secret", "10.0.0.1"))
+                .isInstanceOf(TooManyRequestsException.class);
+    }
+
+    @Test
+    void timedOutLoginDoesNotRunQueuedPasswordCheck() throws Exception {
+        ReflectionTestUtils.setField(authService, "loginTimeout", Duration.ofMillis(200));
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Единственный поток пула занят, проверка пароля ждет в очереди и не дожидается
+        loginExecutor.execute(() -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThatThrownBy(() -> authService.authenticate("ivan", "secret", "10.0.0.1"))
+                .isInstanceOf(TooManyRequestsException.class);
+
+        release.countDown();
+        loginExecutor.getThreadPoolExecutor().shutdown();
+        assertThat(loginExecutor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        // Отмененная задача из очереди BCrypt не запускала
+        verify(passwordEncoder, never()).matches(anyString(), anyString());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResultDTO;
+import com.example.bankcards.service.impl.CardTransferExecutor;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Пакетный перевод должен отправлять UPDATE карт JDBC-пакетами, а не по одному на карту
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class BatchTransferBatchingTest extends PostgresIntegrationTest {
+
+    static final int CARDS = 20;
+
+    @Autowired
+    CardTransferExecutor cardTransferExecutor;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void cardUpdatesOfOneBatchAreSentAsJdbcBatches() {
+        long userId = TestData.createUser(jdbcTemplate, "batching");
+        List<Long> cardIds = TestData.createCards(jdbcTemplate, userId, CARDS, new BigDecimal("100.00"));
+
+        // Каждая карта меняется ровно один раз: перевод с карты i на карту i + 1 половины пакета
+        List<TransferRequest> transfers = new ArrayList<>();
+        for (int i = 0; i < CARDS; i += 2) {
+            transfers.add(new TransferRequest(cardIds.get(i), cardIds.get(i + 1), BigDecimal.TEN));
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<TransferResultDTO> results = cardTransferExecutor.transferBatch(userId, transfers, 0);
+
+        assertThat(results).allMatch(TransferResultDTO::isSuccess);
+        assertThat(statistics.getEntityUpdateCount()).isEqualTo(CARDS);
+        // SELECT ... FOR UPDATE, nextval журнала, пакет INSERT журнала и пакет UPDATE карт -
+        // без пакетов было бы по statement на каждую карту и каждую запись журнала
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(CARDS / 2);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.dto.CardImportErrorDTO;
+import com.example.bankcards.dto.CardImportResultDTO;
+import com.example.bankcards.util.CsvReader;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Ошибка в строке файла отклоняет только эту строку, а не всю порцию
+class CardImportServiceTest extends PostgresIntegrationTest {
+
+    @Autowired
+    CardImportService cardImportService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void csvRowsViolatingColumnConstraintsAreRejectedOneByOne() {
+        long userId = TestData.createUser(jdbcTemplate, "import");
+        String expires = LocalDate.now().plusYears(3).toString();
+        String csv = "number,owner,expirationDate,userId\n" +
+                cardNumber() + ",Ivan Petrov," + expires + "," + userId + "\n" +
+                cardNumber() + "," + "x".repeat(101) + "," + expires + "," + userId + "\n" +
+                cardNumber() + ",\" \"," + expires + "," + userId + "\n" +
+                cardNumber() + ",\"Petrov, Ivan\"," + expires + "," + userId + "\n";
+
+        CardImportResultDTO result = cardImportService.importCards(stream(csv), false);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(CardImportErrorDTO::getLine).containsExactly(3L, 4L);
+        assertThat(cardsOf(userId)).isEqualTo(2);
+    }
+
+    @Test
+    void failedBatchIsRetriedRowByRow() {
+        long userId = TestData.createUser(jdbcTemplate, "import");
+        String expires = LocalDate.now().plusYears(3).toString();
+        // Дата проходит проверки в Java, но вне диапазона типа date в PostgreSQL - пакет порции не запишется
+        String ndjson = json(cardNumber(), expires, userId) + "\n" +
+                json(cardNumber(), "+9999999-01-01", userId) + "\n" +
+                json(cardNumber(), expires, userId) + "\n";
+
+        CardImportResultDTO result = cardImportService.importCards(stream(ndjson), true);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(CardImportErrorDTO::getLine).containsExactly(2L);
+        assertThat(result.getErrors().get(0).getError()).isEqualTo("Ошибка записи в БД, строка не загружена");
+        assertThat(cardsOf(userId)).isEqualTo(2);
+    }
+
+    @Test
+    void overlongLinesAreReportedWithoutStoppingImport() {
+        long userId = TestData.createUser(jdbcTemplate, "import");
+        String expires = LocalDate.now().plusYears(3).toString();
+        String ndjson = "{\"owner\":\"" + "x".repeat(CsvReader.MAX_RECORD_LENGTH) + "\"}\n" +
+                json(cardNumber(), expires, userId) + "\n";
+        String csv = "y".repeat(CsvReader.MAX_RECORD_LENGTH + 1) + "\n" +
+                cardNumber() + ",Ivan Petrov," + expires + "," + userId + "\n";
+
+        CardImportResultDTO fromNdjson = cardImportService.importCards(stream(ndjson), true);
+        CardImportResultDTO fromCsv = cardImportService.importCards(stream(csv), false);
+
+        assertThat(fromNdjson.getImported()).isEqualTo(1);
+        assertThat(fromNdjson.getErrors()).extracting(CardImportErrorDTO::getLine).containsExactly(1L);
+        assertThat(fromCsv.getImported()).isEqualTo(1);
+        assertThat(fromCsv.getErrors()).extracting(CardImportErrorDTO::getLine).containsExactly(1L);
+    }
+
+    private String json(String number, String expirationDate, long userId) {
+        return "{\"number\":\"" + number + "\",\"owner\":\"Ivan Petrov\",\"expirationDate\":\"" + expirationDate +
+                "\",\"userId\":" + userId + "}";
+    }
+
+    private long cardsOf(long userId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM cards WHERE user_id = ?", Long.class, userId);
+    }
+
+    private ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Случайный 16-значный номер с верной контрольной суммой Луна
+    private static String cardNumber() {
+        StringBuilder digits = new StringBuilder("4");
+        for (int i = 0; i < 14; i++) {
+            digits.append(ThreadLocalRandom.current().nextInt(10));
+        }
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(digits.length() - 1 - i) - '0';
+            if (i % 2 == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return digits.append((10 - sum % 10) % 10).toString();
+    }
+}
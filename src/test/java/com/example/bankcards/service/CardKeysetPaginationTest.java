@@ -0,0 +1,76 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.security.JwtUserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardKeysetPaginationTest extends PostgresIntegrationTest {
+
+    @Autowired
+    CardService cardService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void walksAllUserCardsOnceInIdOrder() {
+        long userId = TestData.createUser(jdbcTemplate, "keyset");
+        List<Long> expected = TestData.createCards(jdbcTemplate, userId, 23, BigDecimal.ONE);
+        // Карты другого пользователя не должны попадать в выдачу
+        TestData.createCards(jdbcTemplate, TestData.createUser(jdbcTemplate, "keyset-other"), 5, BigDecimal.ONE);
+        authenticate(userId);
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<CardDTO> page = cardService.getUserCards(userId, cursor, 5);
+            page.getItems().forEach(card -> seen.add(card.getId()));
+            assertThat(page.getNextCursor() != null).isEqualTo(page.isHasNext());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(seen).containsExactlyElementsOf(expected);
+        assertThat(pages).isEqualTo(5);
+    }
+
+    @Test
+    void exactMultipleOfPageSizeHasNoEmptyTrailingPage() {
+        long userId = TestData.createUser(jdbcTemplate, "keyset");
+        TestData.createCards(jdbcTemplate, userId, 10, BigDecimal.ONE);
+        authenticate(userId);
+
+        CursorPage<CardDTO> first = cardService.getUserCards(userId, null, 5);
+        CursorPage<CardDTO> second = cardService.getUserCards(userId, first.getNextCursor(), 5);
+
+        assertThat(second.getItems()).hasSize(5);
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    private void authenticate(long userId) {
+        JwtUserPrincipal principal = new JwtUserPrincipal(userId, "keyset", Role.USER);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.job.CardStatsRecomputeJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Сверка сводки с cards: расхождения исправляются приращениями, параллельные изменения карт не теряются и не удваиваются
+class CardStatsRecomputeTest extends PostgresIntegrationTest {
+
+    static final int WRITERS = 4;
+    static final int CARDS_PER_WRITER = 50;
+
+    // Расхождение по статусам: сумма шардов против агрегата по cards
+    static final String STATUS_DRIFT_SQL = "SELECT count(*) FROM (SELECT status, count(*) AS card_count, sum(balance) AS total_balance " +
+            "FROM cards GROUP BY status) a FULL JOIN (SELECT status, sum(card_count) AS card_count, sum(total_balance) AS total_balance " +
+            "FROM card_status_stats GROUP BY status) s USING (status) " +
+            "WHERE coalesce(a.card_count, 0) <> coalesce(s.card_count, 0) OR coalesce(a.total_balance, 0) <> coalesce(s.total_balance, 0)";
+
+    static final String USER_DRIFT_SQL = "SELECT count(*) FROM (SELECT user_id, count(*) AS card_count, sum(balance) AS total_balance " +
+            "FROM cards GROUP BY user_id) a FULL JOIN user_card_stats u USING (user_id) " +
+            "WHERE coalesce(a.card_count, 0) <> coalesce(u.card_count, 0) OR coalesce(a.total_balance, 0) <> coalesce(u.total_balance, 0)";
+
+    @Autowired
+    CardStatsRecomputeJob cardStatsRecomputeJob;
+
+    @Autowired
+    CardStatsService cardStatsService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void recomputeCorrectsDriftAcrossShardsAndUsers() {
+        // Карты, вставленные в обход CardStatsService, - расхождение и по статусам, и по пользователям
+        for (int i = 0; i < 3; i++) {
+            long userId = TestData.createUser(jdbcTemplate, "stats-drift");
+            TestData.createCards(jdbcTemplate, userId, 2 + i, new BigDecimal("10.00"));
+        }
+        assertThat(drift(USER_DRIFT_SQL)).isPositive();
+
+        cardStatsRecomputeJob.recompute();
+
+        assertThat(drift(STATUS_DRIFT_SQL)).isZero();
+        assertThat(drift(USER_DRIFT_SQL)).isZero();
+
+        // Повторная сверка ничего не меняет
+        Map<String, Object> before = jdbcTemplate.queryForMap(
+                "SELECT sum(card_count) AS cards, sum(total_balance) AS balance FROM card_status_stats");
+        cardStatsRecomputeJob.recompute();
+        assertThat(jdbcTemplate.queryForMap(
+                "SELECT sum(card_count) AS cards, sum(total_balance) AS balance FROM card_status_stats")).isEqualTo(before);
+    }
+
+    @Test
+    void concurrentCardChangesDuringRecomputeAreCountedOnce() throws Exception {
+        cardStatsRecomputeJob.recompute();
+
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            users.add(TestData.createUser(jdbcTemplate, "stats-writer"));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (long userId : users) {
+                Callable<Void> task = () -> {
+                    start.await();
+                    for (int i = 0; i < CARDS_PER_WRITER; i++) {
+                        BigDecimal balance = BigDecimal.valueOf(i + 1);
+                        transactionTemplate.executeWithoutResult(status -> {
+                            long cardId = TestData.createCards(jdbcTemplate, userId, 1, balance).get(0);
+                            cardStatsService.recordCardAdded(userId, CardStatus.ACTIVE, balance);
+                            // Каждая пятая карта сразу блокируется - меняются две строки статусов шарда
+                            if (cardId % 5 == 0) {
+                                jdbcTemplate.update("UPDATE cards SET status = 'BLOCKED' WHERE id = ?", cardId);
+                                cardStatsService.recordStatusChange(userId, CardStatus.ACTIVE, CardStatus.BLOCKED, balance);
+                            }
+                        });
+                    }
+                    return null;
+                };
+                results.add(executor.submit(task));
+            }
+            start.countDown();
+
+            // Сверки идут, пока пишут карты: без блокировки таблиц и без учета чужих приращений
+            Future<Integer> recomputes = executor.submit(() -> {
+                int runs = 0;
+                while (writing.get()) {
+                    cardStatsRecomputeJob.recompute();
+                    runs++;
+                }
+                return runs;
+            });
+
+            for (Future<Void> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            assertThat(recomputes.get(60, TimeUnit.SECONDS)).isPositive();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(drift(STATUS_DRIFT_SQL)).isZero();
+        assertThat(drift(USER_DRIFT_SQL)).isZero();
+        for (long userId : users) {
+            assertThat(jdbcTemplate.queryForObject("SELECT card_count FROM user_card_stats WHERE user_id = ?", Long.class, userId))
+                    .isEqualTo(CARDS_PER_WRITER);
+        }
+    }
+
+    private long drift(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+}
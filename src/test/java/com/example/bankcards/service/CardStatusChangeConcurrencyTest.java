@@ -0,0 +1,110 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.exception.ConflictException;
+import com.example.bankcards.exception.ValidationException;
+import com.example.bankcards.job.CardStatsRecomputeJob;
+import com.example.bankcards.service.impl.CardTransferExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Блокировка и активация карты во время переводов по ней: карта блокируется раньше строк сводки,
+// поэтому нет ни deadlock, ни OptimisticLockException из-за версии, увеличенной переводом
+class CardStatusChangeConcurrencyTest extends PostgresIntegrationTest {
+
+    static final int STATUS_CHANGES = 100;
+
+    @Autowired
+    CardService cardService;
+
+    @Autowired
+    CardTransferExecutor cardTransferExecutor;
+
+    @Autowired
+    CardStatsRecomputeJob cardStatsRecomputeJob;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void statusChangesDoNotConflictWithTransfers() throws Exception {
+        long userId = TestData.createUser(jdbcTemplate, "status-lock");
+        List<Long> cards = TestData.createCards(jdbcTemplate, userId, 2, new BigDecimal("1000.00"));
+        long a = cards.get(0);
+        long b = cards.get(1);
+        cardStatsRecomputeJob.recompute(); // Карты TestData созданы в обход сводки
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean changing = new AtomicBoolean(true);
+        try {
+            Future<?> statusChanges = executor.submit(() -> {
+                UserDetails admin = User.withUsername("admin").password("x").roles("ADMIN").build();
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities()));
+                try {
+                    start.await();
+                    for (int i = 0; i < STATUS_CHANGES; i++) {
+                        cardService.blockCard(a);
+                        cardService.activateCard(a);
+                    }
+                } finally {
+                    changing.set(false);
+                    SecurityContextHolder.clearContext();
+                }
+                return null;
+            });
+            List<Future<?>> transfers = List.of(
+                    executor.submit(() -> transferWhile(changing, start, userId, a, b, true)),
+                    executor.submit(() -> transferWhile(changing, start, userId, b, a, false)));
+            start.countDown();
+
+            statusChanges.get(60, TimeUnit.SECONDS);
+            for (Future<?> transfer : transfers) {
+                transfer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM cards WHERE id = ?", String.class, a)).isEqualTo("ACTIVE");
+        assertThat(jdbcTemplate.queryForObject("SELECT sum(balance) FROM cards WHERE user_id = ?", BigDecimal.class, userId))
+                .isEqualByComparingTo("2000.00");
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT sum(card_count) FROM card_status_stats WHERE status = 'BLOCKED'", Long.class))
+                .isEqualTo(jdbcTemplate.queryForObject("SELECT count(*) FROM cards WHERE status = 'BLOCKED'", Long.class));
+    }
+
+    private Void transferWhile(AtomicBoolean changing, CountDownLatch start, long userId, long from, long to,
+                               boolean pessimistic) throws InterruptedException {
+        start.await();
+        while (changing.get()) {
+            try {
+                if (pessimistic) {
+                    cardTransferExecutor.transferWithLocks(userId, from, to, BigDecimal.ONE, null);
+                } else {
+                    cardTransferExecutor.transferAtomic(userId, from, to, BigDecimal.ONE, null);
+                }
+            } catch (ValidationException | ConflictException e) {
+                // Карта сейчас заблокирована - перевод отклонен, это ожидаемо
+            }
+        }
+        return null;
+    }
+}
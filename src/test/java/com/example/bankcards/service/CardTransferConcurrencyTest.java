@@ -0,0 +1,132 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.service.impl.CardTransferExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Встречные переводы A -> B и B -> A под нагрузкой: без упорядоченных блокировок здесь возникали deadlock.
+// Число переводов задается -Dtransfer.stress.transfers, пропускная способность пишется в лог
+@Slf4j
+class CardTransferConcurrencyTest extends PostgresIntegrationTest {
+
+    static final int THREADS = 8;
+    static final int TRANSFERS = Integer.getInteger("transfer.stress.transfers", 4_000);
+    static final int TRANSFERS_PER_THREAD = TRANSFERS / THREADS;
+    // Баланса хватает на все переводы в одну сторону: ни один перевод не отклоняется из-за нехватки средств
+    static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(TRANSFERS_PER_THREAD * THREADS);
+
+    @Autowired
+    CardTransferExecutor cardTransferExecutor;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void opposingPessimisticTransfersDoNotDeadlock() throws Exception {
+        runOpposingTransfers("transferWithLocks", (userId, from, to) ->
+                cardTransferExecutor.transferWithLocks(userId, from, to, BigDecimal.ONE, null));
+    }
+
+    @Test
+    void opposingAtomicTransfersDoNotDeadlock() throws Exception {
+        runOpposingTransfers("transferAtomic", (userId, from, to) ->
+                cardTransferExecutor.transferAtomic(userId, from, to, BigDecimal.ONE, null));
+    }
+
+    private void runOpposingTransfers(String name, Transfer transfer) throws Exception {
+        long userId = TestData.createUser(jdbcTemplate, "concurrency");
+        List<Long> cards = TestData.createCards(jdbcTemplate, userId, 2, INITIAL_BALANCE);
+        long a = cards.get(0);
+        long b = cards.get(1);
+
+        BigDecimal total = INITIAL_BALANCE.add(INITIAL_BALANCE);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        long elapsedNanos;
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                // Четные потоки переводят A -> B, нечетные - B -> A
+                long from = t % 2 == 0 ? a : b;
+                long to = t % 2 == 0 ? b : a;
+                Callable<Void> task = () -> {
+                    start.await();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        transfer.run(userId, from, to);
+                    }
+                    return null;
+                };
+                results.add(executor.submit(task));
+            }
+
+            // Каждый перевод - одна транзакция, поэтому в любом снимке сумма балансов не меняется
+            Future<Integer> samples = executor.submit(() -> {
+                int checked = 0;
+                while (running.get()) {
+                    assertThat(totalBalance(a, b)).isEqualByComparingTo(total);
+                    checked++;
+                    Thread.sleep(10); // Проверка не должна заметно отнимать соединения у переводов
+                }
+                return checked;
+            });
+
+            long started = System.nanoTime();
+            start.countDown();
+
+            // Любой deadlock или потерянное обновление всплывет здесь исключением
+            try {
+                for (Future<Void> result : results) {
+                    result.get(10, TimeUnit.MINUTES);
+                }
+            } finally {
+                running.set(false);
+            }
+            elapsedNanos = System.nanoTime() - started;
+            assertThat(samples.get(60, TimeUnit.SECONDS)).isPositive();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int transfers = THREADS * TRANSFERS_PER_THREAD;
+        log.info("{}: {} переводов за {} мс, {} переводов/с", name, transfers, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                Math.round(transfers * 1e9 / elapsedNanos));
+
+        // Потоков в каждую сторону поровну, поэтому балансы возвращаются к исходным
+        assertThat(balance(a)).isEqualByComparingTo(INITIAL_BALANCE);
+        assertThat(balance(b)).isEqualByComparingTo(INITIAL_BALANCE);
+        assertThat(totalBalance(a, b)).isEqualByComparingTo(total);
+        Long recorded = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM card_transactions WHERE card_id = ? AND type = 'TRANSFER_DEBIT'", Long.class, a);
+        assertThat(recorded).isEqualTo((long) THREADS / 2 * TRANSFERS_PER_THREAD);
+    }
+
+    private BigDecimal balance(long cardId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM cards WHERE id = ?", BigDecimal.class, cardId);
+    }
+
+    private BigDecimal totalBalance(long a, long b) {
+        return jdbcTemplate.queryForObject("SELECT sum(balance) FROM cards WHERE id IN (?, ?)", BigDecimal.class, a, b);
+    }
+
+    @FunctionalInterface
+    private interface Transfer {
+        void run(long userId, long fromCardId, long toCardId);
+    }
+}
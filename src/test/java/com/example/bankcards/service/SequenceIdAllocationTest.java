@@ -0,0 +1,82 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import com.example.bankcards.entity.BlockRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.SequenceGenerator;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// id из последовательностей: шаг в БД совпадает с allocationSize, а вставки идут JDBC-пакетами
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class SequenceIdAllocationTest extends PostgresIntegrationTest {
+
+    static final int USERS = 120;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void sequenceIncrementMatchesAllocationSize() throws NoSuchFieldException {
+        for (Class<?> entity : List.of(User.class, Card.class, BlockRequest.class)) {
+            SequenceGenerator generator = entity.getDeclaredField("id").getAnnotation(SequenceGenerator.class);
+
+            Long incrementBy = jdbcTemplate.queryForObject(
+                    "SELECT increment_by FROM pg_sequences WHERE sequencename = ?", Long.class, generator.sequenceName());
+
+            assertThat(incrementBy).as(generator.sequenceName()).isEqualTo((long) generator.allocationSize());
+        }
+    }
+
+    @Test
+    void bulkInsertUsesFewSequenceCallsAndBatchedInserts() {
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUsername("seq-" + UUID.randomUUID());
+            user.setPassword("x");
+            user.setFirstName("Test");
+            user.setLastName("User");
+            user.setRole(Role.USER);
+            users.add(user);
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        transactionTemplate.executeWithoutResult(status -> userRepository.saveAll(users));
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(USERS);
+        // 3 вызова nextval и 3 пакета INSERT; с IDENTITY было бы по INSERT на каждую строку
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(10);
+        assertThat(users).extracting(User::getId).doesNotHaveDuplicates();
+
+        // Вставка через SQL берет id из той же последовательности и не попадает в диапазон, выданный Hibernate
+        long rawId = TestData.createUser(jdbcTemplate, "seq-raw");
+        assertThat(users).extracting(User::getId).doesNotContain(rawId);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.bankcards.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Тестовые данные для интеграционных тестов: пишутся напрямую в таблицы, минуя проверки сервисов
+final class TestData {
+
+    private TestData() {
+    }
+
+    static long createUser(JdbcTemplate jdbcTemplate, String usernamePrefix) {
+        String username = usernamePrefix + "-" + UUID.randomUUID();
+        return jdbcTemplate.queryForObject("INSERT INTO users (id, username, password, first_name, last_name, role, enabled) " +
+                        "VALUES (nextval('users_seq'), ?, 'x', 'Test', 'User', 'USER', true) RETURNING id",
+                Long.class, username);
+    }
+
+    static List<Long> createCards(JdbcTemplate jdbcTemplate, long userId, int count, BigDecimal balance) {
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String unique = UUID.randomUUID().toString().replace("-", "");
+            ids.add(jdbcTemplate.queryForObject("INSERT INTO cards (id, encrypted_number, last_four, number_hash, key_version, " +
+                            "owner, expiration_date, status, balance, user_id, version) " +
+                            "VALUES (nextval('cards_seq'), ?, '1234', ?, 1, 'TEST OWNER', ?, 'ACTIVE', ?, ?, 0) RETURNING id",
+                    Long.class, "test:" + unique, unique, LocalDate.now().plusYears(2), balance, userId));
+        }
+        ids.sort(null);
+        return ids;
+    }
+}
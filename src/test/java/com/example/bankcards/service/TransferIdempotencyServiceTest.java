@@ -0,0 +1,55 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransferIdempotencyServiceTest extends PostgresIntegrationTest {
+
+    @Autowired
+    TransferIdempotencyService transferIdempotencyService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void expiredKeyCanBeReusedBeforeCleanup() {
+        long userId = TestData.createUser(jdbcTemplate, "idempotency");
+        LocalDateTime past = LocalDateTime.now().minusDays(2);
+        jdbcTemplate.update("INSERT INTO transfer_idempotency (idempotency_key, user_id, from_card_id, to_card_id, amount, " +
+                        "created_at, expires_at) VALUES ('reused-key', ?, 1, 2, 5.00, ?, ?)",
+                userId, Timestamp.valueOf(past), Timestamp.valueOf(past.plusDays(1)));
+
+        assertThat(transferIdempotencyService.findCompleted(userId, "reused-key")).isEmpty();
+
+        transactionTemplate.executeWithoutResult(status ->
+                transferIdempotencyService.register(userId, "reused-key", 3L, 4L, BigDecimal.TEN));
+
+        assertThat(transferIdempotencyService.findCompleted(userId, "reused-key"))
+                .hasValueSatisfying(record -> assertThat(record.getFromCardId()).isEqualTo(3L));
+    }
+
+    @Test
+    void activeKeyIsStillRejected() {
+        long userId = TestData.createUser(jdbcTemplate, "idempotency");
+        transactionTemplate.executeWithoutResult(status ->
+                transferIdempotencyService.register(userId, "active-key", 1L, 2L, BigDecimal.ONE));
+
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status ->
+                transferIdempotencyService.register(userId, "active-key", 1L, 2L, BigDecimal.ONE)))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+}
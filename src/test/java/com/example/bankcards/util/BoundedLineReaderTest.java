@@ -0,0 +1,46 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedLineReaderTest {
+
+    @Test
+    void splitsOnAllLineEndings() throws IOException {
+        BoundedLineReader reader = new BoundedLineReader(new StringReader("a\nb\r\nc\rd\n\ne"), 10);
+
+        assertThat(reader.readLine()).isEqualTo("a");
+        assertThat(reader.readLine()).isEqualTo("b");
+        assertThat(reader.readLine()).isEqualTo("c");
+        assertThat(reader.readLine()).isEqualTo("d");
+        assertThat(reader.readLine()).isEmpty();
+        assertThat(reader.readLine()).isEqualTo("e");
+        assertThat(reader.getLineNumber()).isEqualTo(6);
+        assertThat(reader.readLine()).isNull();
+    }
+
+    @Test
+    void cutsLongLineAndSkipsItsRest() throws IOException {
+        // Строка длиннее внутреннего буфера чтения
+        BoundedLineReader reader = new BoundedLineReader(new StringReader("y".repeat(20_000) + "\nnext"), 5);
+
+        assertThat(reader.readLine()).isEqualTo("yyyyy");
+        assertThat(reader.isTruncated()).isTrue();
+        assertThat(reader.readLine()).isEqualTo("next");
+        assertThat(reader.isTruncated()).isFalse();
+        assertThat(reader.readLine()).isNull();
+    }
+
+    @Test
+    void lineOfExactlyMaxLengthIsNotTruncated() throws IOException {
+        BoundedLineReader reader = new BoundedLineReader(new StringReader("12345\r\n"), 5);
+
+        assertThat(reader.readLine()).isEqualTo("12345");
+        assertThat(reader.isTruncated()).isFalse();
+        assertThat(reader.readLine()).isNull();
+    }
+}
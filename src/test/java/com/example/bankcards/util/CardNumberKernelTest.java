@@ -0,0 +1,97 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardNumberKernelTest {
+
+    @Test
+    void acceptsKnownValidNumbersOfEvenAndOddLength() {
+        assertThat(CardNumberKernel.isLuhnValid(CardNumberKernel.scan("4111111111111111"))).isTrue(); // 16
+        assertThat(CardNumberKernel.isLuhnValid(CardNumberKernel.scan("378282246310005"))).isTrue(); // 15
+        assertThat(CardNumberKernel.isLuhnValid(CardNumberKernel.scan("4222222222222"))).isTrue(); // 13
+        assertThat(CardNumberKernel.isLuhnValid(CardNumberKernel.scan("6011 0009 9013 9424"))).isTrue();
+    }
+
+    @Test
+    void rejectsChangedCheckDigit() {
+        assertThat(CardNumberKernel.isLuhnValid(CardNumberKernel.scan("4111111111111112"))).isFalse();
+        assertThat(CardNumberKernel.isLuhnValid(CardNumberKernel.scan("378282246310006"))).isFalse();
+        assertThat(CardNumberKernel.isLuhnValid(CardNumberKernel.scan(""))).isFalse();
+    }
+
+    @Test
+    void matchesReferenceLuhnForRandomNumbersOfEveryLength() {
+        Random random = new Random(42);
+        for (int length = 1; length <= 24; length++) {
+            for (int n = 0; n < 500; n++) {
+                StringBuilder number = new StringBuilder();
+                for (int i = 0; i < length; i++) {
+                    number.append((char) ('0' + random.nextInt(10)));
+                    if (random.nextInt(5) == 0) {
+                        number.append(random.nextBoolean() ? ' ' : '-');
+                    }
+                }
+
+                long scan = CardNumberKernel.scan(number);
+
+                String digits = number.toString().replaceAll("\\D", "");
+                assertThat(CardNumberKernel.isLuhnValid(scan)).as(number.toString()).isEqualTo(referenceLuhn(digits));
+                assertThat(CardNumberKernel.digitCount(scan)).isEqualTo(length);
+            }
+        }
+    }
+
+    @Test
+    void checksLengthBounds() {
+        assertThat(CardNumberKernel.hasValidLength(CardNumberKernel.scan("1".repeat(12)))).isFalse();
+        assertThat(CardNumberKernel.hasValidLength(CardNumberKernel.scan("1".repeat(13)))).isTrue();
+        assertThat(CardNumberKernel.hasValidLength(CardNumberKernel.scan("1".repeat(19)))).isTrue();
+        assertThat(CardNumberKernel.hasValidLength(CardNumberKernel.scan("1".repeat(20)))).isFalse();
+    }
+
+    @Test
+    void ignoresNonAsciiDigits() {
+        // Арабско-индийские цифры не считаются цифрами номера, как и у replaceAll("\\D", "")
+        long scan = CardNumberKernel.scan("4111 1111 1111 1111 ١٢");
+
+        assertThat(CardNumberKernel.digitCount(scan)).isEqualTo(16);
+        assertThat(CardNumberKernel.lastFour(scan)).isEqualTo("1111");
+    }
+
+    @Test
+    void extractsLastFourMaskAndAsciiDigits() {
+        String number = "5500-0000-0000-0004";
+        long scan = CardNumberKernel.scan(number);
+
+        assertThat(CardNumberKernel.lastFour(scan)).isEqualTo("0004");
+        assertThat(CardNumberKernel.mask(scan)).isEqualTo("**** **** **** 0004");
+        assertThat(new String(CardNumberKernel.asciiDigits(number, CardNumberKernel.digitCount(scan)),
+                StandardCharsets.US_ASCII)).isEqualTo("5500000000000004");
+    }
+
+    // Классическая проверка: справа налево, каждая вторая цифра удваивается
+    private static boolean referenceLuhn(String digits) {
+        if (digits.isEmpty()) {
+            return false;
+        }
+        int sum = 0;
+        boolean doubled = false;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return sum % 10 == 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.ValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvReaderTest {
+
+    @Test
+    void splitsPlainFields() {
+        assertThat(CsvReader.parseRecord("4111111111111111,Ivan Petrov,2030-01-31,7"))
+                .containsExactly("4111111111111111", "Ivan Petrov", "2030-01-31", "7");
+    }
+
+    @Test
+    void keepsEmptyFields() {
+        assertThat(CsvReader.parseRecord(",a,")).containsExactly("", "a", "");
+        assertThat(CsvReader.parseRecord("")).containsExactly("");
+    }
+
+    @Test
+    void unquotesCommasAndDoubledQuotes() {
+        assertThat(CsvReader.parseRecord("1,\"Petrov, Ivan\",\"OOO \"\"Romashka\"\"\",\"\""))
+                .containsExactly("1", "Petrov, Ivan", "OOO \"Romashka\"", "");
+    }
+
+    @Test
+    void rejectsMalformedQuotes() {
+        assertThatThrownBy(() -> CsvReader.parseRecord("1,Iv\"an,2")).isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> CsvReader.parseRecord("1,\"Ivan\"x,2")).isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> CsvReader.parseRecord("1,\"Ivan,2")).isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void joinsLinesInsideQuotesAndTracksRecordLine() throws IOException {
+        CsvReader reader = reader("a,b\n1,\"multi\nline\"\n2,c\n");
+
+        assertThat(reader.readRecord()).isEqualTo("a,b");
+        assertThat(reader.getRecordLine()).isEqualTo(1);
+        String record = reader.readRecord();
+        assertThat(reader.getRecordLine()).isEqualTo(2);
+        assertThat(CsvReader.parseRecord(record)).containsExactly("1", "multi\nline");
+        assertThat(reader.readRecord()).isEqualTo("2,c");
+        assertThat(reader.getRecordLine()).isEqualTo(4);
+        assertThat(reader.readRecord()).isNull();
+    }
+
+    @Test
+    void unterminatedQuoteDoesNotSwallowWholeFile() throws IOException {
+        String longLine = "x".repeat(CsvReader.MAX_RECORD_LENGTH);
+        CsvReader reader = reader("1,\"broken\n" + longLine + "\n2,c\n");
+
+        assertThatThrownBy(() -> CsvReader.parseRecord(reader.readRecord())).isInstanceOf(ValidationException.class);
+        assertThat(reader.isRecordTooLong()).isTrue();
+        assertThat(reader.readRecord()).isEqualTo("2,c");
+        assertThat(reader.isRecordTooLong()).isFalse();
+        assertThat(reader.getRecordLine()).isEqualTo(3);
+    }
+
+    @Test
+    void overlongLineIsCutAndFlagged() throws IOException {
+        CsvReader reader = reader("x".repeat(CsvReader.MAX_RECORD_LENGTH * 3) + "\r\n2,c\r\n");
+
+        assertThat(reader.readRecord()).hasSize(CsvReader.MAX_RECORD_LENGTH);
+        assertThat(reader.isRecordTooLong()).isTrue();
+        assertThat(reader.readRecord()).isEqualTo("2,c");
+        assertThat(reader.getRecordLine()).isEqualTo(2);
+        assertThat(reader.readRecord()).isNull();
+    }
+
+    private CsvReader reader(String content) {
+        return new CsvReader(new BufferedReader(new StringReader(content)));
+    }
+}
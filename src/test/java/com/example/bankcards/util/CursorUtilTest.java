@@ -0,0 +1,43 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.ValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CursorUtilTest {
+
+    final CursorUtil cursorUtil = new CursorUtil();
+
+    @Test
+    void decodesWhatItEncodes() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 10, 1, 12, 30, 15, 123_456_000);
+
+        String cursor = cursorUtil.encode(createdAt, 42L);
+
+        assertThat(cursorUtil.decode(cursor, 2)).containsExactly(createdAt.toString(), "42");
+    }
+
+    @Test
+    void cursorIsUrlSafe() {
+        String cursor = cursorUtil.encode("???>>>", 9_223_372_036_854_775_807L);
+
+        assertThat(cursor).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void rejectsWrongNumberOfParts() {
+        String cursor = cursorUtil.encode(1L, 2L);
+
+        assertThatThrownBy(() -> cursorUtil.decode(cursor, 1)).isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> cursorUtil.decode(cursor, 3)).isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void rejectsGarbage() {
+        assertThatThrownBy(() -> cursorUtil.decode("not base64!", 1)).isInstanceOf(ValidationException.class);
+    }
+}
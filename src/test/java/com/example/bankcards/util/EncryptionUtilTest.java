@@ -0,0 +1,135 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.EncryptionException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EncryptionUtilTest {
+
+    static final String KEY_V1 = "ThisIsA32ByteSecretKeyForAES256!";
+    static final String KEY_V2 = "AnotherSecretKeyOf32BytesLength!";
+
+    @Test
+    void decryptsWhatItEncrypts() {
+        EncryptionUtil encryptionUtil = encryptionUtil(KEY_V1, "", 1);
+
+        String encrypted = encryptionUtil.encrypt("4111111111111111");
+
+        assertThat(encrypted).doesNotContain("4111111111111111");
+        assertThat(encryptionUtil.decrypt(encrypted)).isEqualTo("4111111111111111");
+    }
+
+    @Test
+    void rejectsEmptyInputAndCorruptedCiphertext() {
+        EncryptionUtil encryptionUtil = encryptionUtil(KEY_V1, "", 1);
+
+        assertThatThrownBy(() -> encryptionUtil.encrypt(" ")).isInstanceOf(EncryptionException.class);
+        assertThatThrownBy(() -> encryptionUtil.decrypt("v1:not-base64!")).isInstanceOf(EncryptionException.class);
+        assertThatThrownBy(() -> encryptionUtil.decrypt("v1:AAAAAAAAAAAAAAAAAAAAAA==")).isInstanceOf(EncryptionException.class);
+    }
+
+    @Test
+    void cipherIsUsableAfterFailedDecrypt() {
+        EncryptionUtil encryptionUtil = encryptionUtil(KEY_V1, "", 1);
+        String encrypted = encryptionUtil.encrypt("4111111111111111");
+
+        assertThatThrownBy(() -> encryptionUtil.decrypt("v1:AAAAAAAAAAAAAAAAAAAAAA==")).isInstanceOf(EncryptionException.class);
+
+        assertThat(encryptionUtil.decrypt(encrypted)).isEqualTo("4111111111111111");
+    }
+
+    @Test
+    void perThreadCiphersDoNotMixConcurrentCalls() throws Exception {
+        EncryptionUtil encryptionUtil = encryptionUtil(KEY_V1, "", 1);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                Callable<Integer> task = () -> {
+                    start.await();
+                    int checked = 0;
+                    for (int i = 0; i < 2_000; i++) {
+                        String number = String.format("4%03d%012d", thread, i);
+                        assertThat(encryptionUtil.decrypt(encryptionUtil.encrypt(number))).isEqualTo(number);
+                        checked++;
+                    }
+                    return checked;
+                };
+                results.add(executor.submit(task));
+            }
+            start.countDown();
+
+            for (Future<Integer> result : results) {
+                assertThat(result.get()).isEqualTo(2_000);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void encryptsWithActiveVersionAndDecryptsEveryConfiguredVersion() {
+        EncryptionUtil before = encryptionUtil(KEY_V1, "2:" + KEY_V2, 1);
+        EncryptionUtil after = encryptionUtil(KEY_V1, "2:" + KEY_V2, 2);
+
+        String old = before.encrypt("4111111111111111");
+        String rotated = after.encrypt("4111111111111111");
+
+        assertThat(old).startsWith("v1:");
+        assertThat(rotated).startsWith("v2:");
+        assertThat(after.keyVersionOf(old)).isEqualTo(1);
+        assertThat(after.keyVersionOf(rotated)).isEqualTo(2);
+        assertThat(after.decrypt(old)).isEqualTo("4111111111111111");
+        assertThat(before.decrypt(rotated)).isEqualTo("4111111111111111");
+    }
+
+    @Test
+    void unprefixedCiphertextIsLegacyVersion() throws Exception {
+        Cipher cipher = Cipher.getInstance(EncryptionUtil.ALGORITHM);
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(KEY_V1.getBytes(StandardCharsets.UTF_8), "AES"));
+        String legacy = Base64.getEncoder().encodeToString(cipher.doFinal("4111111111111111".getBytes(StandardCharsets.UTF_8)));
+        EncryptionUtil encryptionUtil = encryptionUtil(KEY_V1, "2:" + KEY_V2, 2);
+
+        assertThat(encryptionUtil.keyVersionOf(legacy)).isEqualTo(EncryptionUtil.LEGACY_KEY_VERSION);
+        assertThat(encryptionUtil.decrypt(legacy)).isEqualTo("4111111111111111");
+    }
+
+    @Test
+    void rejectsUnknownVersionsAndBadKeyRing() {
+        EncryptionUtil encryptionUtil = encryptionUtil(KEY_V1, "", 1);
+
+        assertThatThrownBy(() -> encryptionUtil.decrypt("v3:AAAAAAAAAAAAAAAAAAAAAA==")).isInstanceOf(EncryptionException.class);
+        assertThatThrownBy(() -> encryptionUtil.keyVersionOf("vx:AAAA")).isInstanceOf(EncryptionException.class);
+        assertThatThrownBy(() -> encryptionUtil.keyVersionOf("x1:AAAA")).isInstanceOf(EncryptionException.class);
+        assertThatThrownBy(() -> encryptionUtil(KEY_V1, "", 2)).isInstanceOf(EncryptionException.class);
+        assertThatThrownBy(() -> encryptionUtil(KEY_V1, "1:" + KEY_V2, 1)).isInstanceOf(EncryptionException.class);
+        assertThatThrownBy(() -> encryptionUtil(KEY_V1, KEY_V2, 1)).isInstanceOf(EncryptionException.class);
+    }
+
+    static EncryptionUtil encryptionUtil(String secretKey, String keyRing, int activeKeyVersion) {
+        EncryptionUtil encryptionUtil = new EncryptionUtil();
+        ReflectionTestUtils.setField(encryptionUtil, "secretKey", secretKey);
+        ReflectionTestUtils.setField(encryptionUtil, "keyRing", keyRing);
+        ReflectionTestUtils.setField(encryptionUtil, "activeKeyVersion", activeKeyVersion);
+        encryptionUtil.initKeys();
+        return encryptionUtil;
+    }
+}